@@ -0,0 +1,40 @@
+/*
+ Lease table for sharded scraping runs, created in the control schema.
+
+ A sharded run splits the location catalog into shards (one per region, or one per hash bucket).
+ Every scraper process claims one pending shard at a time by setting itself as owner and pushing lease_until forward;
+ a shard whose lease has expired is considered abandoned and may be claimed by another process.
+ Once every shard of a run is 'SU', the process that completed the last one writes the run manifest
+ listing the destination of every shard, and records it in data_files for the loader.
+ A shard still unfinished after scraper.shards.maxAttempts claims is marked 'EF'; the run is then recorded as failed
+ in data_files instead, and its '#manifest' row is marked 'EF' as well.
+
+ Status: 'PE' pending, 'CL' claimed, 'SU' success, 'EF' failed.
+*/
+
+SET NAMES utf8mb4;
+SET FOREIGN_KEY_CHECKS = 0;
+
+-- ----------------------------
+-- Table structure for shard_leases
+-- ----------------------------
+DROP TABLE IF EXISTS `shard_leases`;
+CREATE TABLE `shard_leases`  (
+  `id` int NOT NULL AUTO_INCREMENT,
+  `run_code` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NOT NULL,
+  `shard_key` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NOT NULL,
+  `status` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NOT NULL DEFAULT 'PE',
+  `owner` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL DEFAULT NULL,
+  `lease_until` timestamp NULL DEFAULT NULL,
+  `attempts` int NOT NULL DEFAULT 0,
+  `destination` varchar(1000) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL DEFAULT NULL,
+  `row_count` bigint NULL DEFAULT NULL,
+  `note` text CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci NULL,
+  `created_at` timestamp NOT NULL DEFAULT current_timestamp,
+  `updated_at` timestamp NOT NULL DEFAULT current_timestamp ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`) USING BTREE,
+  UNIQUE INDEX `uq_shard_leases_run_shard`(`run_code`, `shard_key`) USING BTREE,
+  INDEX `idx_shard_leases_run_status`(`run_code`, `status`) USING BTREE
+) ENGINE = InnoDB AUTO_INCREMENT = 1 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci ROW_FORMAT = DYNAMIC;
+
+SET FOREIGN_KEY_CHECKS = 1;
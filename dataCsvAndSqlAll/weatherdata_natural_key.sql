@@ -0,0 +1,25 @@
+/*
+ Natural key of the staging table, needed by the merge refresh mode (staging.refreshMode=merge).
+
+ A forecast row is identified by its location and hour: (Province, District, Forecast_hour), where Forecast_hour is
+ the DATETIME generated from the Date ('yyyy-MM-dd') and Time ('HH:mm') text columns.
+ The merge mode loads the CSV files into weatherdata_next, then upserts them into weatherdata on this key,
+ so only new or changed forecast rows are written and the table is never emptied.
+ Afterwards each loaded location's rows for hours before its first loaded hour are deleted, and so are the rows of
+ locations missing from the load for hours before the load started, so passed hours do not pile up.
+ The merge runs for every new successful scraping process; with scraper.runEvery=hour that is every hour.
+ The key holds the full Province and District values (2 x 1020 bytes in utf8mb4) and the 5-byte DATETIME, under the
+ 3072-byte index limit, so two different locations or hours never share a key.
+ Existing duplicates must be removed before the key can be added, e.g. by truncating the table once.
+ If an earlier version of this script added the key on column prefixes, drop it first:
+   ALTER TABLE `weatherdata` DROP INDEX `uk_weatherdata_location_hour`;
+*/
+
+SET NAMES utf8mb4;
+
+-- ----------------------------
+-- Natural key for weatherdata
+-- ----------------------------
+ALTER TABLE `weatherdata`
+  ADD COLUMN `Forecast_hour` datetime GENERATED ALWAYS AS (CAST(CONCAT(`Date`, ' ', `Time`) AS DATETIME)) STORED NULL AFTER `Time`,
+  ADD UNIQUE INDEX `uk_weatherdata_location_hour`(`Province`, `District`, `Forecast_hour`) USING BTREE;
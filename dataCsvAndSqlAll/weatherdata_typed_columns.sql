@@ -0,0 +1,30 @@
+/*
+ Typed measurement columns of the staging table, filled by the loader when staging.typedColumns=true.
+
+ The text columns (Temperature "min/max", Humidity, Wind_speed, ...) are kept as they are for the existing queries;
+ the numeric columns next to them hold the same measurements, parsed and range-checked at load time,
+ so queries can filter and index on them without parsing text.
+ The wind speed is in m/s: the site labels it "km/giờ", but its values (0.01 to 11.77 over six days of scraped files)
+ are the m/s figures of its data source. If an earlier version of this script added `Wind_speed_kmh`, rename it:
+   ALTER TABLE `weatherdata` RENAME COLUMN `Wind_speed_kmh` TO `Wind_speed_ms`;
+ The placeholders the scraper writes for a missing measurement ("Không có dữ liệu ...", "Không rõ ...") are loaded as
+ NULL by every engine.
+ With the insert and parallel load engines, rows whose other measurements do not parse are written to the reject file
+ instead of the table. The loadData engine (LOAD DATA LOCAL INFILE) cannot leave rows out: it loads them with the
+ text columns as scraped and NULL in every numeric column whose measurement does not parse.
+*/
+
+SET NAMES utf8mb4;
+
+-- ----------------------------
+-- Typed measurements for weatherdata
+-- ----------------------------
+ALTER TABLE `weatherdata`
+  ADD COLUMN `Temperature_min` decimal(5, 2) NULL DEFAULT NULL AFTER `Ip`,
+  ADD COLUMN `Temperature_max` decimal(5, 2) NULL DEFAULT NULL AFTER `Temperature_min`,
+  ADD COLUMN `Humidity_percent` decimal(5, 2) NULL DEFAULT NULL AFTER `Temperature_max`,
+  ADD COLUMN `Wind_speed_ms` decimal(5, 2) NULL DEFAULT NULL AFTER `Humidity_percent`,
+  ADD COLUMN `Uv_index_value` decimal(4, 2) NULL DEFAULT NULL AFTER `Wind_speed_ms`,
+  ADD COLUMN `Visibility_km` decimal(5, 2) NULL DEFAULT NULL AFTER `Uv_index_value`,
+  ADD COLUMN `Pressure_mb` decimal(6, 1) NULL DEFAULT NULL AFTER `Visibility_km`,
+  ADD INDEX `idx_weatherdata_date_temperature`(`Date`(20), `Temperature_max`) USING BTREE;
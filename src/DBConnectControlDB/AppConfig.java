@@ -0,0 +1,105 @@
+package DBConnectControlDB;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Provides typed access to the settings stored in 'config.properties'.
+ * The file is read once from the classpath; every getter falls back to the given default value
+ * when a key is missing or cannot be parsed.
+ */
+public class AppConfig {
+
+    private static Properties properties = new Properties();
+
+    /**
+     * Static initializer to load the configuration properties.
+     * If the 'config.properties' file is not found or cannot be read, a runtime exception is thrown.
+     */
+    static {
+        try (InputStream input = AppConfig.class.getClassLoader().getResourceAsStream("config.properties")) {
+            if (input == null) {
+                throw new RuntimeException("config.properties could not be found in the classpath");
+            }
+            properties.load(input);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            throw new RuntimeException("Unable to load config.properties", ex);
+        }
+    }
+
+    /**
+     * Retrieves a string setting. System properties (-Dkey=value) take precedence over the file.
+     *
+     * @param key          The property key.
+     * @param defaultValue The value returned if the key is not set.
+     * @return The configured value or the default value.
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key, properties.getProperty(key));
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return value.trim();
+    }
+
+    /**
+     * Retrieves an integer setting.
+     *
+     * @param key          The property key.
+     * @param defaultValue The value returned if the key is not set or is not a number.
+     * @return The configured value or the default value.
+     */
+    public static int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(getString(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid integer for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Retrieves a long setting.
+     *
+     * @param key          The property key.
+     * @param defaultValue The value returned if the key is not set or is not a number.
+     * @return The configured value or the default value.
+     */
+    public static long getLong(String key, long defaultValue) {
+        try {
+            return Long.parseLong(getString(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Retrieves a decimal setting.
+     *
+     * @param key          The property key.
+     * @param defaultValue The value returned if the key is not set or is not a number.
+     * @return The configured value or the default value.
+     */
+    public static double getDouble(String key, double defaultValue) {
+        try {
+            return Double.parseDouble(getString(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Retrieves a boolean setting ("true" or "false").
+     *
+     * @param key          The property key.
+     * @param defaultValue The value returned if the key is not set.
+     * @return The configured value or the default value.
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(getString(key, String.valueOf(defaultValue)));
+    }
+}
@@ -0,0 +1,414 @@
+package DBConnectControlDB;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of connections to one database, behind {@link DatabaseConnector#connect(String)}.
+ * A borrowed connection is a proxy: closing it rolls back an unfinished transaction, restores auto-commit, closes the
+ * statements left open through it and gives the physical connection back to the pool, and any later use of the proxy fails.
+ * <p>
+ * At most 'database.pool.maxSize' connections are open per database; a caller finding them all in use waits up to
+ * 'database.pool.maxWaitMillis' before getting an SQLException. A connection that sat idle for more than
+ * 'database.pool.validateAfterMillis' is checked with isValid before it is handed out, and replaced if the server dropped it.
+ * A housekeeping thread closes connections idle for more than 'database.pool.idleTimeoutSeconds', and reports connections
+ * borrowed for more than 'database.pool.leakDetectionSeconds' with the stack trace of the code that borrowed them.
+ * The statistics of every pool (active, idle, wait time) are printed when the JVM exits.
+ */
+public class ConnectionPool {
+
+    private static final Map<String, ConnectionPool> POOLS = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService HOUSEKEEPING = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "connection-pool-housekeeping");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        long period = Math.max(1, AppConfig.getLong("database.pool.housekeepingSeconds", 30));
+        HOUSEKEEPING.scheduleAtFixedRate(() -> {
+            for (ConnectionPool pool : POOLS.values()) {
+                pool.evictIdleConnections();
+                pool.reportLeaks();
+            }
+        }, period, period, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (ConnectionPool pool : POOLS.values()) {
+                System.out.println("Connection pool " + pool);
+                pool.close();
+            }
+        }, "connection-pool-shutdown"));
+    }
+
+    /**
+     * A physical connection owned by the pool.
+     */
+    private static class PooledConnection {
+        private final Connection physical;
+        private long lastUsedNanos = System.nanoTime();
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+    }
+
+    /**
+     * One borrowing of a pooled connection, handed out as a proxy that stops working once closed.
+     */
+    private class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final long borrowedNanos = System.nanoTime();
+        private final Exception borrowedAt = new Exception("Connection to " + databaseName + " borrowed here");
+        private final List<Statement> statements = new ArrayList<>();
+        private boolean returned;
+        private boolean leakReported;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    returnLease(this);
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled connection to " + databaseName + (returned ? " (returned)" : "");
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connection to " + databaseName + " was closed and returned to the pool");
+            }
+            try {
+                Object result = method.invoke(pooled.physical, args);
+                if (result instanceof Statement) {
+                    synchronized (statements) {
+                        statements.add((Statement) result);
+                    }
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private final String databaseName;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long validateAfterNanos;
+    private final long idleTimeoutNanos;
+    private final long leakThresholdNanos;
+
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<Lease> leases = new HashSet<>();
+    private int openConnections;
+    private boolean closed;
+
+    private long borrows;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long timeouts;
+    private long createdConnections;
+    private long discardedConnections;
+    private long leaks;
+
+    /**
+     * Constructs a new ConnectionPool.
+     *
+     * @param databaseName         The database the connections are opened to.
+     * @param maxSize              The maximum number of open connections.
+     * @param maxWaitMillis        How long a caller waits for a connection when all are in use.
+     * @param validateAfterMillis  How long a connection may sit idle before it is validated when borrowed.
+     * @param idleTimeoutSeconds   How long a connection may sit idle before it is closed.
+     * @param leakDetectionSeconds How long a connection may be borrowed before it is reported as a possible leak, or 0 for never.
+     */
+    public ConnectionPool(String databaseName, int maxSize, long maxWaitMillis, long validateAfterMillis, long idleTimeoutSeconds, long leakDetectionSeconds) {
+        this.databaseName = databaseName;
+        this.maxSize = Math.max(1, maxSize);
+        this.maxWaitMillis = Math.max(0, maxWaitMillis);
+        this.validateAfterNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, validateAfterMillis));
+        this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(Math.max(1, idleTimeoutSeconds));
+        this.leakThresholdNanos = leakDetectionSeconds <= 0 ? Long.MAX_VALUE : TimeUnit.SECONDS.toNanos(leakDetectionSeconds);
+    }
+
+    /**
+     * Returns the pool of a database, creating it with the 'database.pool.*' settings on first use.
+     *
+     * @param databaseName The name of the database.
+     * @return The pool shared by every caller connecting to that database.
+     */
+    public static ConnectionPool forDatabase(String databaseName) {
+        return POOLS.computeIfAbsent(databaseName, name -> new ConnectionPool(name,
+                AppConfig.getInt("database.pool.maxSize", 10),
+                AppConfig.getLong("database.pool.maxWaitMillis", 30000),
+                AppConfig.getLong("database.pool.validateAfterMillis", 5000),
+                AppConfig.getLong("database.pool.idleTimeoutSeconds", 300),
+                AppConfig.getLong("database.pool.leakDetectionSeconds", 600)));
+    }
+
+    /**
+     * Borrows a connection, opening one if none is idle and the pool is not full, or waiting for one otherwise.
+     * The caller must close the returned connection to give it back.
+     *
+     * @return A connection to the pool's database.
+     * @throws SQLException If no connection becomes available within 'database.pool.maxWaitMillis', or opening one fails.
+     */
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        while (true) {
+            PooledConnection pooled = null;
+            synchronized (this) {
+                while (pooled == null) {
+                    if (closed) {
+                        throw new SQLException("Connection pool of " + databaseName + " is closed");
+                    }
+                    if (!idle.isEmpty()) {
+                        pooled = idle.pollFirst();
+                    } else if (openConnections < maxSize) {
+                        openConnections++;
+                        break;
+                    } else {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            timeouts++;
+                            throw new SQLException("Timed out after " + maxWaitMillis + " ms waiting for a connection to " + databaseName + ": " + this);
+                        }
+                        try {
+                            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("Interrupted while waiting for a connection to " + databaseName, e);
+                        }
+                    }
+                }
+            }
+
+            if (pooled == null) {
+                try {
+                    pooled = new PooledConnection(DatabaseConnector.openConnection(databaseName));
+                } catch (SQLException | RuntimeException e) {
+                    synchronized (this) {
+                        openConnections--;
+                        notifyAll();
+                    }
+                    throw e;
+                }
+                synchronized (this) {
+                    createdConnections++;
+                }
+            } else if (System.nanoTime() - pooled.lastUsedNanos > validateAfterNanos && !isValid(pooled)) {
+                discard(pooled);
+                continue;
+            }
+            return lend(pooled, System.nanoTime() - start);
+        }
+    }
+
+    private Connection lend(PooledConnection pooled, long waitNanos) {
+        Lease lease = new Lease(pooled);
+        synchronized (this) {
+            leases.add(lease);
+            borrows++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, lease);
+    }
+
+    private static boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(5);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Takes a connection back from a closed proxy, resetting what the borrower may have left behind.
+     */
+    private void returnLease(Lease lease) {
+        synchronized (this) {
+            if (lease.returned) {
+                return;
+            }
+            lease.returned = true;
+            leases.remove(lease);
+        }
+        Connection physical = lease.pooled.physical;
+        boolean reusable;
+        try {
+            synchronized (lease.statements) {
+                for (Statement statement : lease.statements) {
+                    statement.close();
+                }
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            physical.clearWarnings();
+            reusable = !physical.isClosed();
+        } catch (SQLException e) {
+            reusable = false;
+        }
+        if (!reusable) {
+            discard(lease.pooled);
+            return;
+        }
+        synchronized (this) {
+            if (!closed) {
+                lease.pooled.lastUsedNanos = System.nanoTime();
+                idle.addFirst(lease.pooled);
+                notifyAll();
+                return;
+            }
+        }
+        discard(lease.pooled);
+    }
+
+    /**
+     * Closes a physical connection and frees its place in the pool.
+     */
+    private void discard(PooledConnection pooled) {
+        synchronized (this) {
+            openConnections--;
+            discardedConnections++;
+            notifyAll();
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            System.err.println("Unable to close a connection to " + databaseName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the connections idle for longer than 'database.pool.idleTimeoutSeconds'.
+     */
+    void evictIdleConnections() {
+        List<PooledConnection> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Iterator<PooledConnection> iterator = idle.iterator(); iterator.hasNext(); ) {
+                PooledConnection pooled = iterator.next();
+                if (now - pooled.lastUsedNanos > idleTimeoutNanos) {
+                    iterator.remove();
+                    expired.add(pooled);
+                }
+            }
+        }
+        for (PooledConnection pooled : expired) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * Reports, once each, the connections borrowed for longer than 'database.pool.leakDetectionSeconds'.
+     */
+    void reportLeaks() {
+        List<Lease> suspects = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Lease lease : leases) {
+                if (!lease.leakReported && now - lease.borrowedNanos > leakThresholdNanos) {
+                    lease.leakReported = true;
+                    leaks++;
+                    suspects.add(lease);
+                }
+            }
+        }
+        for (Lease lease : suspects) {
+            System.err.println("Possible connection leak: a connection to " + databaseName + " has been borrowed for "
+                    + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - lease.borrowedNanos) + " s without being closed");
+            lease.borrowedAt.printStackTrace();
+        }
+    }
+
+    /**
+     * Closes the idle connections and refuses new borrowings; borrowed connections are closed when they are returned.
+     */
+    public void close() {
+        List<PooledConnection> toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            notifyAll();
+        }
+        for (PooledConnection pooled : toClose) {
+            discard(pooled);
+        }
+    }
+
+    public synchronized int getActiveConnections() {
+        return leases.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of connections that can still be borrowed without waiting for one to be given back.
+     *
+     * @return 'database.pool.maxSize' minus the connections currently borrowed.
+     */
+    public synchronized int getAvailableConnections() {
+        return Math.max(0, maxSize - leases.size());
+    }
+
+    public synchronized int getIdleConnections() {
+        return idle.size();
+    }
+
+    public synchronized long getBorrows() {
+        return borrows;
+    }
+
+    /**
+     * Returns the average time callers waited for a connection, including the time to open new ones.
+     *
+     * @return The average wait in milliseconds.
+     */
+    public synchronized double getAverageWaitMillis() {
+        return borrows == 0 ? 0 : totalWaitNanos / 1e6 / borrows;
+    }
+
+    public synchronized double getMaxWaitMillis() {
+        return maxWaitNanos / 1e6;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: %d active, %d idle, %d/%d open, %d borrows, wait avg %.1f ms max %.1f ms, %d timeouts, %d opened, %d closed, %d possible leaks",
+                databaseName, leases.size(), idle.size(), openConnections, maxSize, borrows, getAverageWaitMillis(), getMaxWaitMillis(),
+                timeouts, createdConnections, discardedConnections, leaks);
+    }
+}
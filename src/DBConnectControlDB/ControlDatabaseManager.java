@@ -3,21 +3,30 @@ package DBConnectControlDB;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Manages interactions with a control database, providing methods to query and update various tables.
+ * Each manager borrows its own connection from the pool; close it, preferably with try-with-resources, to give the connection back.
  */
-public class ControlDatabaseManager {
+public class ControlDatabaseManager implements AutoCloseable {
     public static final String DATA_FILES = "data_files";
     public static final String DATA_FILE_CONFIGS = "data_file_configs";
     public static final String DATA_CHECKPOINTS = "data_checkpoints";
+    public static final String SHARD_LEASES = "shard_leases";
 
-    private static Connection connection;
+    /**
+     * The key of the lease row guarding the manifest of a sharded run; it is never handed out as a shard.
+     */
+    public static final String MANIFEST_SHARD_KEY = "#manifest";
+
+    private final Connection connection;
 
     /**
-     * Constructs a ControlDatabaseManager instance and establishes a connection to the specified database.
+     * Constructs a ControlDatabaseManager instance and borrows a connection to the specified database.
      * This constructor initializes the connection field using the provided database name.
      *
      * @param databaseName The name of the database to connect to.
@@ -27,6 +36,16 @@ public class ControlDatabaseManager {
         this.connection = DatabaseConnector.connect(databaseName);
     }
 
+    /**
+     * Constructs a ControlDatabaseManager instance working on a given connection, e.g. one opened outside the pool
+     * with {@link DatabaseConnector#openConnection(String)}. Closing the manager closes the connection.
+     *
+     * @param connection The connection to the control database.
+     */
+    public ControlDatabaseManager(Connection connection) {
+        this.connection = connection;
+    }
+
     /**
      * Retrieves a DataFile, its associated DataFileConfig, and corresponding DataCheckpoint based on the DataFile's ID.
      * @param dataFileId The ID of the DataFile.
@@ -442,6 +461,16 @@ public class ControlDatabaseManager {
         }
     }
 
+    /**
+     * Closes the database connection, giving it back to the pool.
+     *
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public void close() throws SQLException {
+        closeConnection();
+    }
+
     /**
      * Prints the contents of a ResultSet in a tabular format.
      * This method iterates over the ResultSet and prints each row and column, providing a visual representation of the data.
@@ -500,6 +529,25 @@ public class ControlDatabaseManager {
     }
 
 
+    /**
+     * Checks if a process has successfully completed since a given time, e.g. within the current hour.
+     *
+     * @param nameProcess The name of the process.
+     * @param since       The earliest creation time of the process to count.
+     * @return true if a successful process was created since then, false otherwise.
+     * @throws SQLException If a database access error occurs.
+     */
+    public boolean hasSuccessfulProcessSince(String nameProcess, Timestamp since) throws SQLException {
+        String query = "SELECT COUNT(*) FROM data_files WHERE name = ? AND status = 'SU' AND created_at >= ?";
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setString(1, nameProcess);
+            preparedStatement.setTimestamp(2, since);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) > 0;
+            }
+        }
+    }
+
     /**
      * Checks if any scraping process is currently ongoing and started within the last 30 minutes.
      *
@@ -555,6 +603,27 @@ public class ControlDatabaseManager {
         return null;
     }
 
+    /**
+     * Retrieves the source path associated with the latest successful DataFileConfig of today for a given process name,
+     * e.g. the CSV file read by the latest successful load.
+     *
+     * @param nameProcess The name of the process to filter the results.
+     * @return The source path as a String or null if no successful DataFileConfig is found.
+     * @throws SQLException If a database access error occurs.
+     */
+    public String getLatestSuccessfulSourcePath(String nameProcess) throws SQLException {
+        int dfConfigId = getLatestSuccessfulDfConfigId(nameProcess);
+        if (dfConfigId == -1) {
+            return null;
+        }
+        try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT source_path FROM data_file_configs WHERE id = ?")) {
+            preparedStatement.setInt(1, dfConfigId);
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                return rs.next() ? rs.getString("source_path") : null;
+            }
+        }
+    }
+
     /**
      * Retrieves the ID of the latest successful DataFileConfig created today.
      *
@@ -595,6 +664,286 @@ public class ControlDatabaseManager {
         return null; // Indicates no destination found
     }
 
+    /**
+     * Creates the lease rows of a sharded run, plus the row guarding the run manifest.
+     * Rows that already exist are left untouched, so every process of the run may call this.
+     *
+     * @param runCode   The code identifying the run, shared by all its processes.
+     * @param shardKeys The keys of the shards of the run.
+     * @throws SQLException If a database access error occurs.
+     */
+    public void createShardLeases(String runCode, List<String> shardKeys) throws SQLException {
+        String query = "INSERT IGNORE INTO " + SHARD_LEASES + " (run_code, shard_key, status) VALUES (?, ?, 'PE')";
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            for (String shardKey : shardKeys) {
+                preparedStatement.setString(1, runCode);
+                preparedStatement.setString(2, shardKey);
+                preparedStatement.addBatch();
+            }
+            preparedStatement.setString(1, runCode);
+            preparedStatement.setString(2, MANIFEST_SHARD_KEY);
+            preparedStatement.addBatch();
+            preparedStatement.executeBatch();
+        }
+    }
+
+    /**
+     * Marks the shards of a run that have used up their attempts as failed ('EF'): pending shards given back after their
+     * last attempt, and claimed ones whose lease expired during it. Such shards are never handed out again, and the run
+     * is reported as failed by {@link #claimRunManifest}.
+     *
+     * @param runCode     The code identifying the run.
+     * @param maxAttempts The number of claims after which a shard is no longer handed out.
+     * @return The number of shards marked as failed by this call.
+     * @throws SQLException If a database access error occurs.
+     */
+    public int failExhaustedShards(String runCode, int maxAttempts) throws SQLException {
+        String query = "UPDATE " + SHARD_LEASES + " SET status = 'EF', owner = NULL, lease_until = NULL,"
+                + " note = CONCAT('Gave up after ', attempts, ' attempts: ', COALESCE(note, 'lease expired'))"
+                + " WHERE run_code = ? AND shard_key <> ? AND attempts >= ? AND (status = 'PE' OR (status = 'CL' AND lease_until < NOW()))";
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setString(1, runCode);
+            preparedStatement.setString(2, MANIFEST_SHARD_KEY);
+            preparedStatement.setInt(3, maxAttempts);
+            return preparedStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * Claims a shard of a run that is pending, or whose lease has expired because its owner stopped renewing it.
+     * The claim is a single conditional UPDATE, so two processes never obtain the same shard.
+     *
+     * @param runCode      The code identifying the run.
+     * @param owner        The identity of the claiming process; it must hold at most one shard at a time.
+     * @param leaseSeconds The duration of the lease.
+     * @param maxAttempts  The number of claims after which a shard is no longer handed out.
+     * @return The key of the claimed shard, or null if no shard is available.
+     * @throws SQLException If a database access error occurs.
+     */
+    public String claimShardLease(String runCode, String owner, long leaseSeconds, int maxAttempts) throws SQLException {
+        String claim = "UPDATE " + SHARD_LEASES + " SET status = 'CL', owner = ?, lease_until = DATE_ADD(NOW(), INTERVAL ? SECOND), attempts = attempts + 1"
+                + " WHERE run_code = ? AND shard_key <> ? AND attempts < ? AND (status = 'PE' OR (status = 'CL' AND lease_until < NOW()))"
+                + " ORDER BY id LIMIT 1";
+        try (PreparedStatement preparedStatement = connection.prepareStatement(claim)) {
+            preparedStatement.setString(1, owner);
+            preparedStatement.setLong(2, leaseSeconds);
+            preparedStatement.setString(3, runCode);
+            preparedStatement.setString(4, MANIFEST_SHARD_KEY);
+            preparedStatement.setInt(5, maxAttempts);
+            if (preparedStatement.executeUpdate() == 0) {
+                return null;
+            }
+        }
+        String query = "SELECT shard_key FROM " + SHARD_LEASES + " WHERE run_code = ? AND owner = ? AND status = 'CL' AND shard_key <> ? ORDER BY updated_at DESC LIMIT 1";
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setString(1, runCode);
+            preparedStatement.setString(2, owner);
+            preparedStatement.setString(3, MANIFEST_SHARD_KEY);
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                return rs.next() ? rs.getString("shard_key") : null;
+            }
+        }
+    }
+
+    /**
+     * Extends the lease of a shard held by a process.
+     *
+     * @param runCode      The code identifying the run.
+     * @param shardKey     The key of the shard.
+     * @param owner        The identity of the process holding the lease.
+     * @param leaseSeconds The new duration of the lease, counted from now.
+     * @return true if the lease was extended, false if the process no longer holds it.
+     * @throws SQLException If a database access error occurs.
+     */
+    public boolean renewShardLease(String runCode, String shardKey, String owner, long leaseSeconds) throws SQLException {
+        String query = "UPDATE " + SHARD_LEASES + " SET lease_until = DATE_ADD(NOW(), INTERVAL ? SECOND)"
+                + " WHERE run_code = ? AND shard_key = ? AND owner = ? AND status = 'CL'";
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setLong(1, leaseSeconds);
+            preparedStatement.setString(2, runCode);
+            preparedStatement.setString(3, shardKey);
+            preparedStatement.setString(4, owner);
+            return preparedStatement.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Gives a shard back after a failure, so that it can be claimed again.
+     *
+     * @param runCode  The code identifying the run.
+     * @param shardKey The key of the shard.
+     * @param owner    The identity of the process holding the lease.
+     * @param note     The reason the shard is given back.
+     * @throws SQLException If a database access error occurs.
+     */
+    public void releaseShardLease(String runCode, String shardKey, String owner, String note) throws SQLException {
+        String query = "UPDATE " + SHARD_LEASES + " SET status = 'PE', owner = NULL, lease_until = NULL, note = ?"
+                + " WHERE run_code = ? AND shard_key = ? AND owner = ? AND status = 'CL'";
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setString(1, note);
+            preparedStatement.setString(2, runCode);
+            preparedStatement.setString(3, shardKey);
+            preparedStatement.setString(4, owner);
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * Marks a shard held by a process as done and records the file it was written to.
+     *
+     * @param runCode     The code identifying the run.
+     * @param shardKey    The key of the shard.
+     * @param owner       The identity of the process holding the lease.
+     * @param destination The absolute path of the shard's CSV file.
+     * @param rowCount    The number of rows in the file.
+     * @return true if the shard was completed, false if the lease had been lost to another process.
+     * @throws SQLException If a database access error occurs.
+     */
+    public boolean completeShardLease(String runCode, String shardKey, String owner, String destination, long rowCount) throws SQLException {
+        String query = "UPDATE " + SHARD_LEASES + " SET status = 'SU', lease_until = NULL, destination = ?, row_count = ?, note = NULL"
+                + " WHERE run_code = ? AND shard_key = ? AND owner = ? AND status = 'CL'";
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setString(1, destination);
+            preparedStatement.setLong(2, rowCount);
+            preparedStatement.setString(3, runCode);
+            preparedStatement.setString(4, shardKey);
+            preparedStatement.setString(5, owner);
+            return preparedStatement.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Claims the right to write the manifest of a run once all of its shards are done, or to record the run as failed
+     * once one of its shards has failed.
+     * The shard rows are locked while they are checked, so exactly one process wins even if several finish at the same time.
+     * A manifest claim that is not completed before its lease expires may be taken over by another process; a failed run
+     * is marked on the {@link #MANIFEST_SHARD_KEY} row and reported only once.
+     *
+     * @param runCode      The code identifying the run.
+     * @param owner        The identity of the claiming process.
+     * @param leaseSeconds The duration of the lease.
+     * @return 'CL' if the caller must write the manifest and then complete the {@link #MANIFEST_SHARD_KEY} shard,
+     * 'EF' if the caller must record the run as failed, or null if the run is not finished or another process handles it.
+     * @throws SQLException If a database access error occurs.
+     */
+    public String claimRunManifest(String runCode, String owner, long leaseSeconds) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            boolean claimable = false;
+            boolean allShardsDone = true;
+            boolean anyShardFailed = false;
+            String query = "SELECT shard_key, status, lease_until < NOW() AS expired FROM " + SHARD_LEASES + " WHERE run_code = ? FOR UPDATE";
+            try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+                preparedStatement.setString(1, runCode);
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    while (rs.next()) {
+                        String status = rs.getString("status");
+                        if (MANIFEST_SHARD_KEY.equals(rs.getString("shard_key"))) {
+                            claimable = status.equals("PE") || (status.equals("CL") && rs.getBoolean("expired"));
+                        } else if (status.equals("EF")) {
+                            anyShardFailed = true;
+                        } else if (!status.equals("SU")) {
+                            allShardsDone = false;
+                        }
+                    }
+                }
+            }
+            String result = null;
+            if (claimable && anyShardFailed) {
+                String fail = "UPDATE " + SHARD_LEASES + " SET status = 'EF', owner = ?, lease_until = NULL, note = 'Run failed, a shard used up its attempts'"
+                        + " WHERE run_code = ? AND shard_key = ?";
+                try (PreparedStatement preparedStatement = connection.prepareStatement(fail)) {
+                    preparedStatement.setString(1, owner);
+                    preparedStatement.setString(2, runCode);
+                    preparedStatement.setString(3, MANIFEST_SHARD_KEY);
+                    preparedStatement.executeUpdate();
+                }
+                result = "EF";
+            } else if (claimable && allShardsDone) {
+                String claim = "UPDATE " + SHARD_LEASES + " SET status = 'CL', owner = ?, lease_until = DATE_ADD(NOW(), INTERVAL ? SECOND), attempts = attempts + 1"
+                        + " WHERE run_code = ? AND shard_key = ?";
+                try (PreparedStatement preparedStatement = connection.prepareStatement(claim)) {
+                    preparedStatement.setString(1, owner);
+                    preparedStatement.setLong(2, leaseSeconds);
+                    preparedStatement.setString(3, runCode);
+                    preparedStatement.setString(4, MANIFEST_SHARD_KEY);
+                    preparedStatement.executeUpdate();
+                }
+                result = "CL";
+            }
+            connection.commit();
+            return result;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Retrieves the failed shards of a run with the reason they failed.
+     *
+     * @param runCode The code identifying the run.
+     * @return One "shard key: note" entry per failed shard, in shard order.
+     * @throws SQLException If a database access error occurs.
+     */
+    public List<String> getFailedShards(String runCode) throws SQLException {
+        String query = "SELECT shard_key, note FROM " + SHARD_LEASES + " WHERE run_code = ? AND shard_key <> ? AND status = 'EF' ORDER BY id";
+        List<String> failedShards = new ArrayList<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setString(1, runCode);
+            preparedStatement.setString(2, MANIFEST_SHARD_KEY);
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    failedShards.add(rs.getString("shard_key") + ": " + rs.getString("note"));
+                }
+            }
+        }
+        return failedShards;
+    }
+
+    /**
+     * Retrieves the files written by the completed shards of a run, in shard order.
+     *
+     * @param runCode The code identifying the run.
+     * @return The absolute paths of the shard files.
+     * @throws SQLException If a database access error occurs.
+     */
+    public List<String> getShardDestinations(String runCode) throws SQLException {
+        String query = "SELECT destination FROM " + SHARD_LEASES + " WHERE run_code = ? AND shard_key <> ? AND status = 'SU' ORDER BY id";
+        List<String> destinations = new ArrayList<>();
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setString(1, runCode);
+            preparedStatement.setString(2, MANIFEST_SHARD_KEY);
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    destinations.add(rs.getString("destination"));
+                }
+            }
+        }
+        return destinations;
+    }
+
+    /**
+     * Sums the rows written by the completed shards of a run.
+     *
+     * @param runCode The code identifying the run.
+     * @return The total number of rows.
+     * @throws SQLException If a database access error occurs.
+     */
+    public long getShardRowCount(String runCode) throws SQLException {
+        String query = "SELECT COALESCE(SUM(row_count), 0) FROM " + SHARD_LEASES + " WHERE run_code = ? AND shard_key <> ? AND status = 'SU'";
+        try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+            preparedStatement.setString(1, runCode);
+            preparedStatement.setString(2, MANIFEST_SHARD_KEY);
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
     public static void main(String[] args) throws SQLException {
 //        testDataFilesMethod();
 //        testConfigMethods();
@@ -1,44 +1,56 @@
 package DBConnectControlDB;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.sql.*;
 import java.util.Properties;
 
 public class DatabaseConnector {
 
-    private static Properties properties = new Properties();
-
     /**
-     * Static initializer to load database configuration properties.
-     * This block reads the database configuration settings from the 'config.properties' file located in the classpath.
-     * It initializes the properties object with these settings.
-     * If the 'config.properties' file is not found or cannot be read, a runtime exception is thrown.
+     * Borrows a connection to the database from its {@link ConnectionPool}.
+     * Closing the returned connection gives it back to the pool instead of closing it, after rolling back an unfinished
+     * transaction and restoring auto-commit. With 'database.pool.enabled' set to false a new connection is opened and
+     * closed every time, as {@link #openConnection(String)} does.
+     *
+     * @param databaseName The name of the database to connect to.
+     * @return A Connection object to the specified database.
+     * @throws SQLException If no connection becomes available in time or the connection attempt fails.
      */
-    static {
-        try (InputStream input = DatabaseConnector.class.getClassLoader().getResourceAsStream("config.properties")) {
-            if (input == null) {
-                throw new RuntimeException("config.properties could not be found in the classpath");
-            }
-            properties.load(input);
-        } catch (IOException ex) {
-            ex.printStackTrace();
-            throw new RuntimeException("Unable to load config.properties", ex);
+    public static Connection connect(String databaseName) throws SQLException {
+        if (!isPoolEnabled()) {
+            return openConnection(databaseName);
         }
+        return ConnectionPool.forDatabase(databaseName).borrow();
     }
 
     /**
-     * Establishes a connection to the database using the provided database name.
-     * This method constructs the database URL by appending the database name to the base URL specified in 'config.properties'.
-     * It then uses this URL along with the username and password from 'config.properties' to establish a connection.
+     * Tells whether {@link #connect(String)} borrows its connections from a {@link ConnectionPool}.
+     *
+     * @return The 'database.pool.enabled' setting, true by default.
+     */
+    public static boolean isPoolEnabled() {
+        return AppConfig.getBoolean("database.pool.enabled", true);
+    }
+
+    /**
+     * Establishes a new connection to the database using the provided database name, bypassing the pool.
+     * This method constructs the database URL by appending the database name to 'database.url' and connects with
+     * 'database.username' and 'database.password', all read through {@link AppConfig}.
+     * With 'database.rewriteBatchedStatements' (default true) the MySQL driver sends a batch of INSERT statements as
+     * multi-row INSERTs, so a batch costs one round trip instead of one per row. 'database.allowLoadLocalInfile' (default false)
+     * lets the client send files for LOAD DATA LOCAL INFILE.
      *
      * @param databaseName The name of the database to connect to.
      * @return A Connection object to the specified database.
      * @throws SQLException If a database access error occurs or the connection attempt fails.
      */
-    public static Connection connect(String databaseName) throws SQLException {
-        String databaseUrl = properties.getProperty("database.url") + databaseName;
-        return DriverManager.getConnection(databaseUrl, properties.getProperty("database.username"), properties.getProperty("database.password"));
+    public static Connection openConnection(String databaseName) throws SQLException {
+        String databaseUrl = AppConfig.getString("database.url", "jdbc:mysql://localhost:3306/") + databaseName;
+        Properties connectionProperties = new Properties();
+        connectionProperties.setProperty("user", AppConfig.getString("database.username", "root"));
+        connectionProperties.setProperty("password", AppConfig.getString("database.password", ""));
+        connectionProperties.setProperty("rewriteBatchedStatements", String.valueOf(AppConfig.getBoolean("database.rewriteBatchedStatements", true)));
+        connectionProperties.setProperty("allowLoadLocalInfile", String.valueOf(AppConfig.getBoolean("database.allowLoadLocalInfile", false)));
+        return DriverManager.getConnection(databaseUrl, connectionProperties);
     }
 
     /**
@@ -0,0 +1,92 @@
+package LoadDataFromCsvToStaging;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Loads the CSV files with a {@link MappedCsvParser} and a prepared INSERT, sending the rows in JDBC batches of 'staging.batchSize'
+ * and committing every 'staging.commitEveryBatches' batches instead of one round trip and one commit per row.
+ * Every file is read once: the progress is the share of bytes parsed so far, and the row count comes from the parse, so a quoted field spanning several lines still counts as one row.
+ */
+public class BatchInsertLoadEngine implements StagingLoadEngine {
+
+    private final int batchSize;
+    private final int commitEveryBatches;
+
+    /**
+     * Constructs a new BatchInsertLoadEngine.
+     *
+     * @param batchSize          The number of rows sent to the database in one JDBC batch.
+     * @param commitEveryBatches The number of batches committed together in one transaction.
+     */
+    public BatchInsertLoadEngine(int batchSize, int commitEveryBatches) {
+        this.batchSize = Math.max(1, batchSize);
+        this.commitEveryBatches = Math.max(1, commitEveryBatches);
+    }
+
+    @Override
+    public long load(Connection connection, String tableName, List<String> csvFilePaths, String lastUpdateTime, RejectFile rejects) throws SQLException, IOException {
+        long totalBytes = 0;
+        for (String path : csvFilePaths) {
+            totalBytes += Files.size(Paths.get(path));
+        }
+        long completedBytes = 0;
+        int processedLines = 0;
+        int batchedLines = 0;
+        int executedBatches = 0;
+        int lastReportedProgress = -1;
+        int progressPercentage = 0;
+        connection.setAutoCommit(false);
+        try (PreparedStatement preparedStatement = connection.prepareStatement(StagingDatabaseManager.insertQuery(tableName))) {
+            for (String path : csvFilePaths) {
+                try (MappedCsvParser parser = new MappedCsvParser(Paths.get(path))) {
+                    StagingRowMapper mapper = new StagingRowMapper(lastUpdateTime, StagingDatabaseManager.TYPED_COLUMNS);
+                    parser.skipLine(); // Skip header line
+                    while (parser.next()) {
+                        String rejection = mapper.map(parser, preparedStatement);
+                        if (rejection != null) {
+                            rejects.reject(path, parser, rejection);
+                            continue;
+                        }
+                        preparedStatement.addBatch();
+                        batchedLines++;
+                        if (batchedLines < batchSize) {
+                            continue;
+                        }
+                        preparedStatement.executeBatch();
+                        processedLines += batchedLines;
+                        batchedLines = 0;
+                        if (++executedBatches % commitEveryBatches == 0) {
+                            connection.commit();
+                        }
+
+                        progressPercentage = totalBytes == 0 ? 100 : (int) Math.min(100, (completedBytes + parser.position()) * 100 / totalBytes);
+                        if (progressPercentage != lastReportedProgress) {
+                            System.out.println("Progress: " + progressPercentage + "% - " + processedLines + " rows");
+                            lastReportedProgress = progressPercentage;
+                        }
+                    }
+                    completedBytes += parser.position();
+                }
+            }
+            if (batchedLines > 0) {
+                preparedStatement.executeBatch();
+                processedLines += batchedLines;
+            }
+            connection.commit();
+            System.out.println("Progress: 100% - " + processedLines + " rows");
+            return processedLines;
+        } catch (SQLException | IOException e) {
+            // Batches committed so far stay in the table, as the rows loaded before a failure did with row-by-row inserts
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package LoadDataFromCsvToStaging;
+
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+
+/**
+ * Compares the staging loader's parse and map step with opencsv and with {@link MappedCsvParser}, without a database.
+ * A synthetic file in the scraper's format is generated if it does not exist (24 hourly rows per district, 40 districts
+ * per province), then each parser reads it and maps every row to a PreparedStatement that discards its parameters.
+ * Each round reports the rows per second and the bytes allocated per row by the benchmark thread; the first rounds warm up the JIT.
+ * What the mapped parser still allocates is mostly the Strings of the fields that change from row to row, which JDBC needs.
+ * <p>
+ * Usage: {@code CsvParserBenchmark [rows] [file] [rounds]}, by default 10,000,000 rows in a temporary file and 5 rounds.
+ */
+public class CsvParserBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The number of rows, the file to generate or reuse, and the number of rounds.
+     * @throws Exception If the file cannot be written or parsed.
+     */
+    public static void main(String[] args) throws Exception {
+        long rows = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        Path file = args.length > 1 ? Paths.get(args[1]) : Paths.get(System.getProperty("java.io.tmpdir"), "csv-parser-benchmark-" + rows + ".csv");
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        if (!Files.exists(file)) {
+            generate(file, rows);
+        }
+        System.out.println("File: " + file + " (" + Files.size(file) / (1024 * 1024) + " MB)");
+
+        PreparedStatement discarding = discardingStatement();
+        for (int round = 1; round <= rounds; round++) {
+            System.out.println("=== Round " + round + "/" + rounds + " ===");
+            measure("opencsv", () -> parseWithOpenCsv(file, discarding));
+            measure("mapped ", () -> parseWithMappedParser(file, discarding));
+        }
+    }
+
+    private interface Run {
+        long rows() throws Exception;
+    }
+
+    private static long measure(String name, Run run) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long rows = run.rows();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        System.out.printf("%s: %,d rows in %.2f s, %,.0f rows/s, %.1f bytes allocated/row%n", name, rows, seconds, rows / seconds,
+                (double) allocated / Math.max(1, rows));
+        return rows;
+    }
+
+    private static long parseWithOpenCsv(Path file, PreparedStatement statement) throws IOException, CsvValidationException, SQLException {
+        long rows = 0;
+        try (CSVReader reader = new CSVReader(new FileReader(file.toFile(), StandardCharsets.UTF_8))) {
+            String[] nextLine;
+            reader.readNext(); // Skip header line
+            while ((nextLine = reader.readNext()) != null) {
+                StagingDatabaseManager.mapCsvLineToPreparedStatement(nextLine, statement, "2024-01-01 00:00:00");
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static long parseWithMappedParser(Path file, PreparedStatement statement) throws IOException, SQLException {
+        long rows = 0;
+        try (MappedCsvParser parser = new MappedCsvParser(file)) {
+            StagingRowMapper mapper = new StagingRowMapper("2024-01-01 00:00:00", false);
+            parser.skipLine(); // Skip header line
+            while (parser.next()) {
+                mapper.map(parser, statement);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Returns a PreparedStatement whose setters do nothing, so that only parsing and mapping are measured.
+     */
+    private static PreparedStatement discardingStatement() {
+        return (PreparedStatement) Proxy.newProxyInstance(CsvParserBenchmark.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (proxy, method, methodArgs) -> null);
+    }
+
+    /**
+     * Writes a file in the format of the scraper's CSV files.
+     */
+    private static void generate(Path file, long rows) throws IOException {
+        System.out.println("Generating " + rows + " rows in " + file);
+        LocalDate today = LocalDate.now();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("\ufeffProvince,District,Date,Time,TemperatureMin,TemperatureMax,Description,Humidity,WindSpeed,UVIndex,Visibility"
+                    + ",Pressure,StopPoint,AirQuality,URL,IP\n");
+            for (long row = 0; row < rows; row++) {
+                long location = row / 24;
+                int hour = (int) (row % 24);
+                String province = "Tỉnh " + (location / 40);
+                String district = "Quận " + (location % 40);
+                int temperature = 20 + (int) ((location * 7 + hour) % 15);
+                writer.write(province + "," + district + "," + today + "," + String.format("%02d:00", hour) + ","
+                        + temperature + "°," + (temperature + 3) + "°," + (hour % 3 == 0 ? "Mây rải rác" : "Có mưa nhẹ") + ","
+                        + (60 + hour) + "%," + (hour % 9) + " km/h," + (hour % 11) + "," + (8 + hour % 3) + " km,"
+                        + (1005 + hour % 5) + " mb," + (18 + hour % 4) + "°," + (hour % 2 == 0 ? "Tốt" : "Trung bình") + ","
+                        + "https://thoitiet.vn/tinh-" + (location / 40) + "/quan-" + (location % 40) + "/theo-gio,127.0.0.1\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package LoadDataFromCsvToStaging;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.List;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+
+/**
+ * Loads each CSV file with a single LOAD DATA LOCAL INFILE statement, letting the server parse the file instead of
+ * sending one INSERT per row. The CSV fields are read into user variables and the derived columns computed by
+ * {@link StagingDatabaseManager#mapCsvLineToPreparedStatement} become SET expressions.
+ * With 'staging.typedColumns' a row whose measurements do not parse is still loaded, with NULL in the invalid typed
+ * columns; nothing is written to the reject file, unlike with the insert engines.
+ * A backslash in a field is kept as it is, as {@link MappedCsvParser} reads it; MySQL's default escape character would
+ * otherwise drop it or read a field {@code \N} as NULL.
+ * The file is streamed to the driver with setLocalInfileInputStream, so the driver never opens a path named by the server.
+ * Needs 'database.allowLoadLocalInfile=true' on the client and local_infile enabled on the server.
+ */
+public class LoadDataInfileEngine implements StagingLoadEngine {
+
+    /**
+     * The CSV columns in file order, each read into a user variable.
+     */
+    private static final String[] CSV_VARIABLES = {"@province", "@district", "@date", "@time", "@temperatureMin", "@temperatureMax", "@description",
+            "@humidity", "@windSpeed", "@uvIndex", "@visibility", "@pressure", "@stopPoint", "@airQuality", "@url", "@ip"};
+    private static final String CSV_COLUMNS = "(" + String.join(", ", CSV_VARIABLES) + ")";
+
+    @Override
+    public long load(Connection connection, String tableName, List<String> csvFilePaths, String lastUpdateTime, RejectFile rejects) throws SQLException, IOException {
+        long loadedRows = 0;
+        for (String path : csvFilePaths) {
+            try (Statement statement = connection.createStatement();
+                 InputStream input = new BufferedInputStream(Files.newInputStream(Paths.get(path)))) {
+                statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(input);
+                long fileRows = statement.executeLargeUpdate(loadStatement(tableName, path, lastUpdateTime));
+                loadedRows += fileRows;
+                System.out.println("Loaded " + fileRows + " rows from " + path);
+                printWarnings(statement.getWarnings());
+            }
+        }
+        return loadedRows;
+    }
+
+    /**
+     * Builds the LOAD DATA statement of a file.
+     *
+     * @param tableName      The table to fill.
+     * @param path           The file, only named in the statement; its content comes from the stream given to the driver.
+     * @param lastUpdateTime The value of the Last_update_time column.
+     * @return The statement.
+     */
+    private static String loadStatement(String tableName, String path, String lastUpdateTime) {
+        return "LOAD DATA LOCAL INFILE " + quote(path) + " INTO TABLE " + tableName + " CHARACTER SET utf8mb4"
+                + " FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY '' LINES TERMINATED BY '\\n' IGNORE 1 LINES "
+                + CSV_COLUMNS
+                + " SET Date = @date, Time = @time, Province = @province, Wards = NULL, District = @district"
+                + ", Temperature = CONCAT(@temperatureMin, '/', @temperatureMax)"
+                + ", Feeling = CONCAT('Cảm giác như ', @temperatureMax, ' độ')"
+                + ", Status = @description, Humidity = @humidity, Vision = @visibility, Wind_speed = @windSpeed"
+                + ", Stop_point = @stopPoint, Uv_index = @uvIndex, Airquality = @airQuality"
+                + ", Last_update_time = " + quote(lastUpdateTime)
+                + ", Breadcrumb = IF(@district = '', CONCAT(@province, ', Việt Nam'), CONCAT(@district, ', ', @province, ', Việt Nam'))"
+                + ", Url = @url"
+                // Same as extractPathFromUrl: the part after the first '/' following "//", or NULL
+                + ", Path = IF(LOCATE('/', @url, LOCATE('//', @url) + 2) = 0, NULL, SUBSTRING(@url, LOCATE('/', @url, LOCATE('//', @url) + 2) + 1))"
+                + ", Dtrequest = NULL, Request = NULL, Method = NULL, Protocols = NULL, Status_code = NULL"
+                + ", Host = 'localhost', Server = 'localhost', Ip = @ip"
+                + typedAssignments();
+    }
+
+    /**
+     * Builds the assignments of the typed columns when 'staging.typedColumns' is on. Unlike the insert engines, rows with
+     * invalid measurements are loaded with NULL in the typed column rather than written to the reject file.
+     */
+    private static String typedAssignments() {
+        if (!StagingDatabaseManager.TYPED_COLUMNS) {
+            return "";
+        }
+        StringBuilder assignments = new StringBuilder();
+        for (TypedColumn column : TypedColumn.values()) {
+            assignments.append(", ").append(column.getColumnName()).append(" = ").append(column.sqlExpression(CSV_VARIABLES[column.getCsvIndex()]));
+        }
+        return assignments.toString();
+    }
+
+    private static String quote(String value) {
+        return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+
+    /**
+     * Prints the warnings of a load, such as truncated or missing fields, which LOAD DATA reports instead of failing.
+     */
+    private static void printWarnings(SQLWarning warning) {
+        int count = 0;
+        for (; warning != null; warning = warning.getNextWarning()) {
+            if (count++ < 10) {
+                System.err.println("Load warning: " + warning.getMessage());
+            }
+        }
+        if (count > 10) {
+            System.err.println("... " + (count - 10) + " more load warnings");
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package LoadDataFromCsvToStaging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Parser for the CSV files written by the scraper, reading the file through memory-mapped windows.
+ * Each record is decoded from UTF-8 into one reused char buffer and split into fields in the same pass, so parsing a row
+ * allocates no line, no array and no builder. A field only becomes a String when it is read with {@link #get(int)}, and
+ * not even then if it holds the same text as in the previous row: Province, District, Date, Url and the derived columns
+ * built from them repeat for every hour of a location, so most rows reuse the Strings of the row before.
+ * <p>
+ * Fields follow RFC 4180: separated by commas, optionally enclosed in double quotes, with a doubled quote standing for a
+ * quote inside a quoted field, which may span several lines. Blank lines are skipped. Unlike opencsv a backslash is an
+ * ordinary character.
+ */
+public class MappedCsvParser implements Closeable {
+
+    /**
+     * The number of columns of a scraped CSV file.
+     */
+    public static final int COLUMNS = 16;
+
+    /**
+     * The number of records that must parse from a line start for {@link #recordBoundaryAt} to take it as a record start.
+     */
+    private static final int PROBED_RECORDS = 2;
+
+    private static final int WINDOW_BYTES = 64 * 1024 * 1024;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long end;
+
+    private MappedByteBuffer window;
+    private long windowStart = -1;
+    private int windowBytes = WINDOW_BYTES;
+    private long recordStart;
+    private long lineNumber;
+
+    private char[] chars = new char[1024];
+    private final int[] fieldStarts = new int[COLUMNS + 1];
+    private final int[] fieldEnds = new int[COLUMNS + 1];
+    private int fieldCount;
+
+    private final String[] values = new String[COLUMNS];
+    private final boolean[] changed = new boolean[COLUMNS];
+
+    /**
+     * Opens a whole file.
+     *
+     * @param file The CSV file.
+     * @throws IOException If the file cannot be opened.
+     */
+    public MappedCsvParser(Path file) throws IOException {
+        this(file, 0, Files.size(file));
+    }
+
+    /**
+     * Opens a byte range of a file, which must start at the beginning of a record.
+     *
+     * @param file  The CSV file.
+     * @param start The offset of the first byte to parse.
+     * @param end   The offset after the last byte to parse.
+     * @throws IOException If the file cannot be opened.
+     */
+    public MappedCsvParser(Path file, long start, long end) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.end = Math.min(end, channel.size());
+        this.recordStart = start;
+    }
+
+    /**
+     * Finds the first record starting at or after an offset, so that a file can be split at arbitrary offsets and every
+     * part parsed on its own. Quotes cannot be told apart from an arbitrary offset, so a line start is taken as a record
+     * start only if the next {@link #PROBED_RECORDS} records read from it have exactly {@link #COLUMNS} fields and no
+     * unterminated quoted field; a line inside a quoted field that spans several lines fails this and is passed over.
+     * The result only depends on the file and the offset, so the part ending at a boundary and the part starting there
+     * agree on it, and every record belongs to exactly one part.
+     *
+     * @param file   The CSV file.
+     * @param offset The offset to start looking from.
+     * @return The offset of the first record starting at or after the offset, or the size of the file if there is none.
+     * @throws IOException If the file cannot be read.
+     */
+    public static long recordBoundaryAt(Path file, long offset) throws IOException {
+        try (MappedCsvParser parser = new MappedCsvParser(file, offset, Files.size(file))) {
+            return parser.findRecordBoundary(offset);
+        }
+    }
+
+    private long findRecordBoundary(long offset) throws IOException {
+        long candidate = offset;
+        if (candidate > 0) {
+            mapWindow(candidate - 1);
+            if (window.get((int) (candidate - 1 - windowStart)) != '\n') {
+                skipLine();
+                candidate = recordStart;
+            }
+        }
+        while (candidate < end && !startsRecords(candidate)) {
+            recordStart = candidate;
+            skipLine();
+            candidate = recordStart;
+        }
+        return Math.min(candidate, end);
+    }
+
+    private boolean startsRecords(long candidate) {
+        recordStart = candidate;
+        windowStart = -1;
+        try {
+            for (int i = 0; i < PROBED_RECORDS; i++) {
+                if (!next()) {
+                    return true;
+                }
+                if (fieldCount != COLUMNS) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false; // Unterminated quoted field or too few fields: not a record start
+        }
+    }
+
+    /**
+     * Skips a line without splitting it, e.g. the header line.
+     *
+     * @throws IOException If the file cannot be read.
+     */
+    public void skipLine() throws IOException {
+        while (recordStart < end) {
+            mapWindow(recordStart);
+            int position = (int) (recordStart - windowStart);
+            int limit = window.limit();
+            while (position < limit && window.get(position) != '\n') {
+                position++;
+            }
+            if (position < limit) {
+                recordStart = windowStart + position + 1;
+                lineNumber++;
+                return;
+            }
+            if (windowStart + limit >= end) {
+                recordStart = end;
+                return;
+            }
+            windowBytes *= 2;
+            windowStart = -1; // The line is longer than the window: map a larger one
+        }
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return true if there is a record, false at the end of the range.
+     * @throws IOException If the file cannot be read, or a record has an unterminated quoted field or fewer than {@link #COLUMNS} fields.
+     */
+    public boolean next() throws IOException {
+        while (recordStart < end) {
+            mapWindow(recordStart);
+            int consumed = parseRecord((int) (recordStart - windowStart), windowStart + window.limit() >= end);
+            if (consumed < 0) {
+                if (windowStart == recordStart) {
+                    windowBytes *= 2; // The record is longer than the window
+                }
+                windowStart = -1;
+                continue;
+            }
+            recordStart += consumed;
+            if (fieldCount == 1 && fieldEnds[0] == fieldStarts[0]) {
+                continue; // Blank line
+            }
+            if (fieldCount < COLUMNS) {
+                throw new IOException("Line " + lineNumber + " of " + file + " has " + fieldCount + " fields instead of " + COLUMNS);
+            }
+            for (int column = 0; column < COLUMNS; column++) {
+                changed[column] = !sameText(values[column], fieldStarts[column], fieldEnds[column]);
+                if (changed[column]) {
+                    values[column] = null;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a field of the current record. The String of the previous row is returned if the text is unchanged.
+     *
+     * @param column The index of the column, from 0.
+     * @return The text of the field.
+     */
+    public String get(int column) {
+        String value = values[column];
+        if (value == null) {
+            value = new String(chars, fieldStarts[column], fieldEnds[column] - fieldStarts[column]);
+            values[column] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Tells whether a field of the current record differs from the same field of the previous record.
+     *
+     * @param column The index of the column, from 0.
+     * @return true if the text changed, or for the first record.
+     */
+    public boolean changed(int column) {
+        return changed[column];
+    }
+
+    /**
+     * Tells whether a field of the current record is empty.
+     *
+     * @param column The index of the column, from 0.
+     * @return true if the field has no text.
+     */
+    public boolean isEmpty(int column) {
+        return fieldEnds[column] == fieldStarts[column];
+    }
+
+    /**
+     * Returns the offset in the file of the next record, to report progress.
+     *
+     * @return The offset of the first byte not parsed yet.
+     */
+    public long position() {
+        return recordStart;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void mapWindow(long offset) throws IOException {
+        if (windowStart >= 0 && offset >= windowStart && offset < windowStart + window.limit()) {
+            return;
+        }
+        // Each window starts at a record, so only a record crossing the end of a window is parsed twice
+        windowStart = offset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowBytes, end - offset));
+    }
+
+    /**
+     * Decodes and splits one record.
+     *
+     * @param start The position of the record in the window.
+     * @param last  Whether the window reaches the end of the range.
+     * @return The number of bytes of the record, including its line break, or -1 if the window ends inside it.
+     * @throws IOException If the range ends inside a quoted field.
+     */
+    private int parseRecord(int start, boolean last) throws IOException {
+        MappedByteBuffer buffer = window;
+        int limit = buffer.limit();
+        int position = start;
+        int length = 0;
+        int field = 0;
+        fieldStarts[0] = 0;
+        boolean quoted = false;
+        boolean fieldBegins = true;
+        long lines = 1;
+        while (true) {
+            if (position >= limit) {
+                if (!last) {
+                    return -1;
+                }
+                if (quoted) {
+                    throw new IOException("Unterminated quoted field at line " + (lineNumber + 1) + " of " + file);
+                }
+                break;
+            }
+            int b = buffer.get(position++);
+            if (length + 2 > chars.length) {
+                char[] larger = new char[chars.length * 2];
+                System.arraycopy(chars, 0, larger, 0, length);
+                chars = larger;
+            }
+            if (b == '"') {
+                if (fieldBegins) {
+                    quoted = true;
+                    fieldBegins = false;
+                    continue;
+                }
+                if (quoted) {
+                    if (position < limit && buffer.get(position) == '"') {
+                        chars[length++] = '"';
+                        position++;
+                    } else if (position >= limit && !last) {
+                        return -1; // Cannot tell a doubled quote from a closing one yet
+                    } else {
+                        quoted = false;
+                    }
+                    continue;
+                }
+                chars[length++] = '"';
+                continue;
+            }
+            fieldBegins = false;
+            if (!quoted) {
+                if (b == ',') {
+                    if (field < COLUMNS) {
+                        fieldEnds[field] = length;
+                        field++;
+                        fieldStarts[field] = length;
+                    } else {
+                        field++;
+                    }
+                    fieldBegins = true;
+                    continue;
+                }
+                if (b == '\n') {
+                    break;
+                }
+                if (b == '\r' && (position >= limit || buffer.get(position) == '\n')) {
+                    continue;
+                }
+            } else if (b == '\n') {
+                lines++;
+            }
+            if (field >= COLUMNS) {
+                continue; // Fields past the known columns are ignored
+            }
+            if (b >= 0) {
+                chars[length++] = (char) b;
+                continue;
+            }
+            // Multi-byte UTF-8 sequence
+            int extra = (b & 0xE0) == 0xC0 ? 1 : (b & 0xF0) == 0xE0 ? 2 : (b & 0xF8) == 0xF0 ? 3 : -1;
+            if (extra < 0) {
+                chars[length++] = '\uFFFD';
+                continue;
+            }
+            if (position + extra > limit) {
+                if (!last) {
+                    return -1;
+                }
+                chars[length++] = '\uFFFD';
+                position = limit;
+                continue;
+            }
+            int codePoint = b & (0x3F >> extra);
+            for (int i = 0; i < extra; i++) {
+                codePoint = (codePoint << 6) | (buffer.get(position++) & 0x3F);
+            }
+            if (codePoint == 0xFEFF && start == 0 && windowStart == 0 && length == 0) {
+                continue; // Byte order mark at the start of the file
+            }
+            if (Character.isBmpCodePoint(codePoint)) {
+                chars[length++] = (char) codePoint;
+            } else {
+                chars[length++] = Character.highSurrogate(codePoint);
+                chars[length++] = Character.lowSurrogate(codePoint);
+            }
+        }
+        if (field < COLUMNS) {
+            fieldEnds[field] = length;
+        }
+        fieldCount = field + 1;
+        lineNumber += lines;
+        return position - start;
+    }
+
+    private boolean sameText(String value, int start, int end) {
+        if (value == null || value.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i - start) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
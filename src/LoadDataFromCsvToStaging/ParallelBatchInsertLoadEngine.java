@@ -0,0 +1,249 @@
+package LoadDataFromCsvToStaging;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import DBConnectControlDB.ConnectionPool;
+import DBConnectControlDB.DatabaseConnector;
+
+/**
+ * Loads the CSV files over several connections at once.
+ * Every file is cut into byte ranges of about 'staging.parallel.chunkMegabytes' from their sizes alone, without reading
+ * them; 'staging.parallel.threads' workers, each with its own connection, take the ranges from a shared queue, move both
+ * ends of their range to the next record boundary with {@link MappedCsvParser#recordBoundaryAt}, parse it and insert its
+ * rows in JDBC batches of 'staging.batchSize', committing every 'staging.commitEveryBatches' batches.
+ * The workers borrow their connections from the pool of the database, so there are no more of them than the pool has
+ * connections left next to the caller's; more would wait for a connection until the load fails.
+ * <p>
+ * The first failing range stops the other workers after their current batch, and its exception is thrown from
+ * {@link #load}, so the run is marked as failed once on its data_files row. The batches the workers committed before
+ * stay in the table; the caller removes them, see StagingDatabaseManager#discardFailedLoad.
+ */
+public class ParallelBatchInsertLoadEngine implements StagingLoadEngine {
+
+    /**
+     * A byte range of a CSV file, holding the records that start inside it once both ends are moved to a record boundary.
+     */
+    private static class Chunk {
+        private final Path file;
+        private final long start;
+        private final long end;
+        private final boolean first;
+        private final boolean last;
+
+        private Chunk(Path file, long start, long end, boolean first, boolean last) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        public String toString() {
+            return file + " [" + start + ", " + end + ")";
+        }
+    }
+
+    private final int threads;
+    private final long chunkBytes;
+    private final int batchSize;
+    private final int commitEveryBatches;
+
+    /**
+     * Constructs a new ParallelBatchInsertLoadEngine.
+     *
+     * @param threads            The number of workers, each loading over its own connection.
+     * @param chunkBytes         The largest size of a byte range taken by a worker at once.
+     * @param batchSize          The number of rows sent to the database in one JDBC batch.
+     * @param commitEveryBatches The number of batches committed together in one transaction.
+     */
+    public ParallelBatchInsertLoadEngine(int threads, long chunkBytes, int batchSize, int commitEveryBatches) {
+        this.threads = Math.max(1, threads);
+        this.chunkBytes = Math.max(64 * 1024, chunkBytes);
+        this.batchSize = Math.max(1, batchSize);
+        this.commitEveryBatches = Math.max(1, commitEveryBatches);
+    }
+
+    @Override
+    public long load(Connection connection, String tableName, List<String> csvFilePaths, String lastUpdateTime, RejectFile rejects) throws SQLException, IOException {
+        // The workers open their connections to the database the given connection is using
+        String databaseName = connection.getCatalog();
+        long totalBytes = 0;
+        for (String path : csvFilePaths) {
+            totalBytes += Files.size(Paths.get(path));
+        }
+        // Small files are still spread over every worker
+        long targetBytes = Math.min(chunkBytes, Math.max(64 * 1024, totalBytes / threads + 1));
+        Queue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+        for (String path : csvFilePaths) {
+            chunks.addAll(splitIntoChunks(Paths.get(path), targetBytes));
+        }
+        int workers = Math.min(threads, Math.max(1, chunks.size()));
+        if (DatabaseConnector.isPoolEnabled()) {
+            int available = Math.max(1, ConnectionPool.forDatabase(databaseName).getAvailableConnections());
+            if (workers > available) {
+                System.out.println("Limiting the load to " + available + " connections, the ones left in the pool of " + databaseName);
+                workers = available;
+            }
+        }
+        System.out.println("Loading " + chunks.size() + " chunks of " + csvFilePaths.size() + " csv files with " + workers + " connections");
+
+        AtomicLong loadedRows = new AtomicLong();
+        AtomicLong readBytes = new AtomicLong();
+        AtomicInteger lastReportedProgress = new AtomicInteger(-1);
+        AtomicBoolean failed = new AtomicBoolean();
+        long progressTotal = totalBytes;
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            futures.add(executor.submit(() -> {
+                loadChunks(databaseName, tableName, chunks, lastUpdateTime, rejects, failed, loadedRows, readBytes, lastReportedProgress, progressTotal);
+                return null;
+            }));
+        }
+        executor.shutdown();
+
+        Exception failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = (Exception) e.getCause();
+                } else {
+                    failure.addSuppressed(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                failed.set(true);
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the load workers", e);
+            }
+        }
+        if (failure instanceof SQLException) {
+            throw (SQLException) failure;
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        if (failure != null) {
+            throw new IOException("Load worker failed: " + failure.getMessage(), failure);
+        }
+        System.out.println("Progress: 100% - " + loadedRows.get() + " rows");
+        return loadedRows.get();
+    }
+
+    /**
+     * Loads chunks from the queue over one connection until the queue is empty or another worker has failed.
+     */
+    private void loadChunks(String databaseName, String tableName, Queue<Chunk> chunks, String lastUpdateTime, RejectFile rejects, AtomicBoolean failed,
+                            AtomicLong loadedRows, AtomicLong readBytes, AtomicInteger lastReportedProgress, long totalBytes) throws SQLException, IOException {
+        try (Connection connection = DatabaseConnector.connect(databaseName)) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(StagingDatabaseManager.insertQuery(tableName))) {
+                Chunk chunk;
+                while (!failed.get() && (chunk = chunks.poll()) != null) {
+                    loadChunk(chunk, connection, preparedStatement, lastUpdateTime, rejects, failed, loadedRows, readBytes, lastReportedProgress, totalBytes);
+                }
+                connection.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                failed.set(true);
+                // Only the current transaction is rolled back; the caller discards the batches committed so far
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private void loadChunk(Chunk chunk, Connection connection, PreparedStatement preparedStatement, String lastUpdateTime, RejectFile rejects, AtomicBoolean failed,
+                           AtomicLong loadedRows, AtomicLong readBytes, AtomicInteger lastReportedProgress, long totalBytes) throws SQLException, IOException {
+        int batchedLines = 0;
+        int executedBatches = 0;
+        // The neighbouring chunks find the same boundaries, so each record is loaded by exactly one of them
+        long start = chunk.first ? 0 : MappedCsvParser.recordBoundaryAt(chunk.file, chunk.start);
+        long end = chunk.last ? Files.size(chunk.file) : MappedCsvParser.recordBoundaryAt(chunk.file, chunk.end);
+        if (start >= end) {
+            return; // A record longer than the chunk, loaded by the chunk it starts in
+        }
+        long reportedPosition = start;
+        try (MappedCsvParser parser = new MappedCsvParser(chunk.file, start, end)) {
+            if (chunk.first) {
+                parser.skipLine(); // Header line
+            }
+            StagingRowMapper mapper = new StagingRowMapper(lastUpdateTime, StagingDatabaseManager.TYPED_COLUMNS);
+            while (parser.next()) {
+                String rejection = mapper.map(parser, preparedStatement);
+                if (rejection != null) {
+                    rejects.reject(chunk.file.toString(), parser, rejection);
+                    continue;
+                }
+                preparedStatement.addBatch();
+                batchedLines++;
+                if (batchedLines < batchSize) {
+                    continue;
+                }
+                preparedStatement.executeBatch();
+                loadedRows.addAndGet(batchedLines);
+                batchedLines = 0;
+                if (++executedBatches % commitEveryBatches == 0) {
+                    connection.commit();
+                }
+                if (failed.get()) {
+                    return;
+                }
+                reportProgress(readBytes.addAndGet(parser.position() - reportedPosition), totalBytes, loadedRows.get(), lastReportedProgress);
+                reportedPosition = parser.position();
+            }
+        }
+        if (batchedLines > 0) {
+            preparedStatement.executeBatch();
+            loadedRows.addAndGet(batchedLines);
+        }
+        connection.commit();
+        reportProgress(readBytes.addAndGet(end - reportedPosition), totalBytes, loadedRows.get(), lastReportedProgress);
+    }
+
+    private static void reportProgress(long readBytes, long totalBytes, long loadedRows, AtomicInteger lastReportedProgress) {
+        int progressPercentage = totalBytes == 0 ? 100 : (int) Math.min(100, readBytes * 100 / totalBytes);
+        int lastReported = lastReportedProgress.get();
+        if (progressPercentage > lastReported && lastReportedProgress.compareAndSet(lastReported, progressPercentage)) {
+            System.out.println("Progress: " + progressPercentage + "% - " + loadedRows + " rows");
+        }
+    }
+
+    /**
+     * Cuts a CSV file into byte ranges of a target size, from its size alone. The ranges do not start or end on record
+     * boundaries yet: the worker loading a range moves both ends to the next record boundary, so the file is never read
+     * serially before the workers start.
+     *
+     * @param file        The CSV file.
+     * @param targetBytes The size of a range.
+     * @return The ranges, covering the whole file in order; the first one starts with the header line.
+     * @throws IOException If the size of the file cannot be read.
+     */
+    private static List<Chunk> splitIntoChunks(Path file, long targetBytes) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        long size = Files.size(file);
+        for (long start = 0; start < size; start += targetBytes) {
+            long end = Math.min(size, start + targetBytes);
+            chunks.add(new Chunk(file, start, end, start == 0, end == size));
+        }
+        return chunks;
+    }
+}
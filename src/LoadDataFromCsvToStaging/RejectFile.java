@@ -0,0 +1,82 @@
+package LoadDataFromCsvToStaging;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * CSV file collecting the rows a load left out because their measurements did not parse, with the file they came from
+ * and the reason, so that a few bad rows are quarantined instead of failing the whole load.
+ * Only the insert engines reject rows; {@link LoadDataInfileEngine} loads them with NULL in the invalid typed columns.
+ * The file is only created when the first row is rejected. Workers of the parallel engine share one RejectFile.
+ */
+public class RejectFile implements Closeable {
+
+    private final Path file;
+    private BufferedWriter writer;
+    private long count;
+
+    /**
+     * Constructs a new RejectFile.
+     *
+     * @param file The file to write the rejected rows to.
+     */
+    public RejectFile(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Writes the current record of a parser to the file.
+     *
+     * @param sourceFile The CSV file the record was read from.
+     * @param row        The parser, positioned on the rejected record.
+     * @param reason     Why the record was rejected.
+     * @throws IOException If the file cannot be written.
+     */
+    public synchronized void reject(String sourceFile, MappedCsvParser row, String reason) throws IOException {
+        if (writer == null) {
+            Path directory = file.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            writer.write("Province,District,Date,Time,TemperatureMin,TemperatureMax,Description,Humidity,WindSpeed,UVIndex,Visibility"
+                    + ",Pressure,StopPoint,AirQuality,URL,IP,SourceFile,Reason\n");
+        }
+        for (int column = 0; column < MappedCsvParser.COLUMNS; column++) {
+            writer.write(quote(row.get(column)));
+            writer.write(',');
+        }
+        writer.write(quote(sourceFile));
+        writer.write(',');
+        writer.write(quote(reason));
+        writer.write('\n');
+        count++;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private static String quote(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,25 +1,93 @@
 package LoadDataFromCsvToStaging;
 
+import DBConnectControlDB.AppConfig;
 import DBConnectControlDB.ControlDatabaseManager;
 import DBConnectControlDB.DatabaseConnector;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvValidationException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The StagingDatabaseManager class is responsible for managing database operations related to the staging environment.
  * This includes connecting to the database, truncating tables, loading data from CSV files, and other CRUD operations.
  */
-public class StagingDatabaseManager {
+public class StagingDatabaseManager implements AutoCloseable {
 
     public static final String nameProcess = "LoadCsvToStaging";
+
+    /**
+     * The staging table read by the next steps of the pipeline.
+     */
+    public static final String TABLE = "weatherdata";
+    /**
+     * The table a swapped load fills before it replaces {@link #TABLE}.
+     */
+    public static final String SHADOW_TABLE = "weatherdata_next";
+    /**
+     * The table replaced by the last swapped load, kept for {@link #rollbackToPreviousTable()}.
+     */
+    public static final String PREVIOUS_TABLE = "weatherdata_prev";
+    /**
+     * The unique index on (Province, District, Forecast_hour) the merge mode upserts on, created by dataCsvAndSqlAll/weatherdata_natural_key.sql.
+     */
+    public static final String NATURAL_KEY = "uk_weatherdata_location_hour";
+    /**
+     * The DATETIME column generated from Date and Time by dataCsvAndSqlAll/weatherdata_natural_key.sql, the hour of a forecast row.
+     */
+    public static final String FORECAST_HOUR = "Forecast_hour";
+
+    /**
+     * The columns compared by the merge mode to tell whether a forecast row changed. The natural key, the id and Last_update_time are left out.
+     */
+    private static final String[] MERGED_COLUMNS = {"Wards", "Temperature", "Feeling", "Status", "Humidity", "Vision", "Wind_speed", "Stop_point",
+            "Uv_index", "Airquality", "Breadcrumb", "Url", "Path", "Dtrequest", "Request", "Method", "Protocols", "Status_code", "Host", "Server", "Ip"};
+
+
+    /**
+     * Whether the loads also fill the numeric columns of {@link TypedColumn}, created by dataCsvAndSqlAll/weatherdata_typed_columns.sql.
+     */
+    static final boolean TYPED_COLUMNS = AppConfig.getBoolean("staging.typedColumns", false);
+
+    private static final String COLUMNS = "Date, Time, Province, Wards, District, Temperature, Feeling, Status, Humidity, Vision, Wind_speed"
+            + ", Stop_point, Uv_index, Airquality, Last_update_time, Breadcrumb, Url, Path, Dtrequest, Request, Method, Protocols, Status_code"
+            + ", Host, Server, Ip";
+
+    /**
+     * Returns the columns filled by a load, in the order of the parameters of {@link #insertQuery(String)}.
+     *
+     * @return The comma-separated column names.
+     */
+    static String insertColumns() {
+        if (!TYPED_COLUMNS) {
+            return COLUMNS;
+        }
+        StringBuilder columns = new StringBuilder(COLUMNS);
+        for (TypedColumn column : TypedColumn.values()) {
+            columns.append(", ").append(column.getColumnName());
+        }
+        return columns.toString();
+    }
+
+    /**
+     * Builds the statement inserting one CSV row, with its derived columns and, with 'staging.typedColumns', its typed
+     * measurements, into a table shaped like 'weatherdata'.
+     *
+     * @param tableName The table to insert into.
+     * @return The statement.
+     */
+    static String insertQuery(String tableName) {
+        int parameters = 26 + (TYPED_COLUMNS ? TypedColumn.values().length : 0);
+        return "INSERT INTO " + tableName + " (" + insertColumns() + ") VALUES (" + "?, ".repeat(parameters - 1) + "?)";
+    }
+
     private Connection connection;
 
     /**
@@ -45,16 +113,128 @@ public class StagingDatabaseManager {
         }
     }
 
+    /**
+     * Recreates the shadow table empty, with the columns and indexes of the 'weatherdata' table.
+     * A shadow table left by a failed load is dropped first.
+     *
+     * @throws SQLException If a database access error occurs.
+     */
+    public void prepareShadowTable() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + SHADOW_TABLE);
+            statement.execute("CREATE TABLE " + SHADOW_TABLE + " LIKE " + TABLE);
+            System.out.println("Shadow table " + SHADOW_TABLE + " created.");
+        }
+    }
+
+    /**
+     * Prepares the shadow table of a merge: like {@link #prepareShadowTable()}, but without the natural key, so that a
+     * location and hour appearing twice in the CSV files does not fail the load (the last one wins in the merge).
+     *
+     * @throws SQLException If 'weatherdata' has no natural key on Forecast_hour, or a database access error occurs.
+     */
+    public void prepareMergeTable() throws SQLException {
+        try (PreparedStatement preparedStatement = connection.prepareStatement("SHOW INDEX FROM " + TABLE + " WHERE Key_name = ? AND Column_name = ?")) {
+            preparedStatement.setString(1, NATURAL_KEY);
+            preparedStatement.setString(2, FORECAST_HOUR);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if (!resultSet.next()) {
+                    throw new SQLException("Merge mode needs the " + NATURAL_KEY + " index on " + TABLE + " with its " + FORECAST_HOUR
+                            + " column, see dataCsvAndSqlAll/weatherdata_natural_key.sql");
+                }
+            }
+        }
+        prepareShadowTable();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE " + SHADOW_TABLE + " DROP INDEX " + NATURAL_KEY);
+        }
+    }
+
+    /**
+     * Upserts the rows of the shadow table into 'weatherdata' on the natural key, then drops the shadow table.
+     * A new location and hour is inserted; an existing one is updated, and its Last_update_time only moves to the time of
+     * this load if one of its values changed, so unchanged forecast rows are not rewritten. The hours that have passed are
+     * then deleted, see {@link #deletePassedHours}.
+     * <p>
+     * Unlike the other refresh modes the merge runs for every new successful scraping process rather than once a day, see
+     * {@link #loadCsvToStaging()}; with 'scraper.runEvery=hour' it brings each hourly forecast into 'weatherdata',
+     * rewriting only the rows that changed since the previous hour.
+     *
+     * @param lastUpdateTime The Last_update_time of the loaded rows, as 'yyyy-MM-dd HH:mm:ss'.
+     * @return The number of rows inserted or changed by the merge.
+     * @throws SQLException If a database access error occurs.
+     */
+    public long mergeShadowTable(String lastUpdateTime) throws SQLException {
+        String columns = insertColumns();
+        List<String> mergedColumns = new ArrayList<>(List.of(MERGED_COLUMNS));
+        if (TYPED_COLUMNS) {
+            for (TypedColumn column : TypedColumn.values()) {
+                mergedColumns.add(column.getColumnName());
+            }
+        }
+        StringBuilder unchanged = new StringBuilder();
+        StringBuilder updates = new StringBuilder();
+        for (String column : mergedColumns) {
+            unchanged.append(unchanged.length() == 0 ? "" : " AND ").append(TABLE).append('.').append(column).append(" <=> VALUES(").append(column).append(')');
+            updates.append(", ").append(column).append(" = VALUES(").append(column).append(')');
+        }
+        // Last_update_time is assigned first, while the other columns still hold their old values
+        String query = "INSERT INTO " + TABLE + " (" + columns + ") SELECT " + columns + " FROM " + SHADOW_TABLE + " ORDER BY id"
+                + " ON DUPLICATE KEY UPDATE Last_update_time = IF(" + unchanged + ", " + TABLE + ".Last_update_time, VALUES(Last_update_time))" + updates;
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(query);
+        }
+        long changedRows;
+        try (PreparedStatement preparedStatement = connection.prepareStatement("SELECT COUNT(*) FROM " + TABLE + " WHERE Last_update_time = ?")) {
+            preparedStatement.setString(1, lastUpdateTime);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                resultSet.next();
+                changedRows = resultSet.getLong(1);
+            }
+        }
+        deletePassedHours(LocalDateTime.parse(lastUpdateTime, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + SHADOW_TABLE);
+        }
+        return changedRows;
+    }
+
+    /**
+     * Replaces the 'weatherdata' table with the loaded shadow table.
+     * Both renames happen in one RENAME TABLE statement, which is atomic: readers see either the old or the new table,
+     * never a missing or partially loaded one. The old table is kept as {@link #PREVIOUS_TABLE}.
+     *
+     * @throws SQLException If a database access error occurs.
+     */
+    public void swapShadowTable() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + PREVIOUS_TABLE);
+            statement.execute("RENAME TABLE " + TABLE + " TO " + PREVIOUS_TABLE + ", " + SHADOW_TABLE + " TO " + TABLE);
+            System.out.println("Table " + TABLE + " swapped with " + SHADOW_TABLE + ", previous data kept in " + PREVIOUS_TABLE + ".");
+        }
+    }
+
+    /**
+     * Puts back the table replaced by the last swapped load, atomically.
+     * The rolled back data becomes the shadow table, which the next load recreates.
+     *
+     * @throws SQLException If there is no previous table or a database access error occurs.
+     */
+    public void rollbackToPreviousTable() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + SHADOW_TABLE);
+            statement.execute("RENAME TABLE " + TABLE + " TO " + SHADOW_TABLE + ", " + PREVIOUS_TABLE + " TO " + TABLE);
+            System.out.println("Table " + TABLE + " rolled back to " + PREVIOUS_TABLE + ".");
+        }
+    }
+
     public static int insertToControlStartProcess() {
-        try {
-            ControlDatabaseManager dbManager = new ControlDatabaseManager("control");
+        try (ControlDatabaseManager dbManager = new ControlDatabaseManager("control")) {
             Timestamp now = Timestamp.valueOf(LocalDateTime.now());
             Timestamp threeDaysLater = Timestamp.valueOf(LocalDateTime.now().plusDays(3));
 
             // Insert into data_files with status "SE"
             int fileId = dbManager.insertDataFile(nameProcess, 0, null, "SE", now, now, threeDaysLater, "Loading data from csv file to staging process started", now, 1, 1, false, null);
-
-//            dbManager.closeConnection();
             System.out.println("Scraping process started and insert to data_files success");
             return fileId;
         } catch (SQLException e) {
@@ -63,6 +243,52 @@ public class StagingDatabaseManager {
         }
     }
 
+    /**
+     * Creates the engine loading the CSV files, according to the 'staging.loadEngine' setting.
+     * "insert" (default) inserts the rows in JDBC batches; "parallel" does the same over 'staging.parallel.threads' connections,
+     * each loading its own byte ranges of the files; "loadData" hands each file to the server with LOAD DATA LOCAL INFILE.
+     *
+     * @return The StagingLoadEngine to use.
+     */
+    private static StagingLoadEngine createLoadEngine() {
+        String engineName = AppConfig.getString("staging.loadEngine", "insert");
+        if (engineName.equalsIgnoreCase("loadData")) {
+            return new LoadDataInfileEngine();
+        }
+        if (engineName.equalsIgnoreCase("parallel")) {
+            return new ParallelBatchInsertLoadEngine(AppConfig.getInt("staging.parallel.threads", Runtime.getRuntime().availableProcessors()),
+                    AppConfig.getLong("staging.parallel.chunkMegabytes", 16) * 1024 * 1024,
+                    AppConfig.getInt("staging.batchSize", 1000), AppConfig.getInt("staging.commitEveryBatches", 10));
+        }
+        return new BatchInsertLoadEngine(AppConfig.getInt("staging.batchSize", 1000), AppConfig.getInt("staging.commitEveryBatches", 10));
+    }
+
+    /**
+     * Deletes the rows of 'weatherdata' for hours that have passed, which the upsert of a merge would otherwise keep forever.
+     * Each location scraped by this load keeps its rows from the first hour it was loaded with: a location whose file is
+     * older keeps the hours that file still holds, and does not make the other locations keep theirs. The rows of
+     * locations missing from this load are deleted up to the hour the load started. Both statements compare the typed
+     * Forecast_hour column, so each location's rows are found through the natural key.
+     *
+     * @param loadTime The time the load started.
+     * @throws SQLException If a database access error occurs.
+     */
+    private void deletePassedHours(LocalDateTime loadTime) throws SQLException {
+        int deletedRows;
+        try (Statement statement = connection.createStatement()) {
+            deletedRows = statement.executeUpdate("DELETE w FROM " + TABLE + " w JOIN (SELECT Province, District, MIN(" + FORECAST_HOUR
+                    + ") AS First_hour FROM " + SHADOW_TABLE + " GROUP BY Province, District) f"
+                    + " ON w.Province = f.Province AND w.District = f.District AND w." + FORECAST_HOUR + " < f.First_hour");
+        }
+        Timestamp currentHour = Timestamp.valueOf(loadTime.truncatedTo(ChronoUnit.HOURS));
+        try (PreparedStatement preparedStatement = connection.prepareStatement("DELETE FROM " + TABLE + " WHERE " + FORECAST_HOUR + " < ?"
+                + " AND NOT EXISTS (SELECT 1 FROM " + SHADOW_TABLE + " n WHERE n.Province = " + TABLE + ".Province AND n.District = " + TABLE + ".District)")) {
+            preparedStatement.setTimestamp(1, currentHour);
+            deletedRows += preparedStatement.executeUpdate();
+        }
+        System.out.println("Deleted " + deletedRows + " rows of " + TABLE + " for hours that have passed");
+    }
+
     /**
      * Loads data from a specified CSV file into the 'weatherdata' staging table.
      *
@@ -70,77 +296,134 @@ public class StagingDatabaseManager {
      * @throws IOException  If an I/O error occurs while reading the CSV file.
      */
     public void loadCsvToStaging() throws SQLException, IOException {
-        ControlDatabaseManager control = new ControlDatabaseManager("control");
-        if (!control.isReadyToRun(nameProcess)) {
-            System.out.println("There are no csv files available today or have loadCsvToStaging process is ongoing.");
-            return;
+        try (ControlDatabaseManager control = new ControlDatabaseManager("control")) {
+            loadCsvToStaging(control);
         }
-        if (!control.hasSuccessfulProcessToday("ScrapDataToCsv")) {
-            System.out.println("There are no ScrapDataToCsv Process Successful today");
-            return;
+    }
+
+    private void loadCsvToStaging(ControlDatabaseManager control) throws SQLException, IOException {
+        // With 'staging.refreshMode=swap' or 'merge' the rows go to the shadow table and 'weatherdata' stays readable during the load
+        String refreshMode = AppConfig.getString("staging.refreshMode", "truncate");
+        boolean swap = refreshMode.equalsIgnoreCase("swap");
+        boolean merge = refreshMode.equalsIgnoreCase("merge");
+        if (merge) {
+            if (!isNewScrapeToMerge(control)) {
+                return;
+            }
+        } else {
+            if (!control.isReadyToRun(nameProcess)) {
+                System.out.println("There are no csv files available today or have loadCsvToStaging process is ongoing.");
+                return;
+            }
+            if (!control.hasSuccessfulProcessToday("ScrapDataToCsv")) {
+                System.out.println("There are no ScrapDataToCsv Process Successful today");
+                return;
+            }
+        }
+        if (swap) {
+            prepareShadowTable();
+        } else if (merge) {
+            prepareMergeTable();
+        } else {
+            truncateTable();
         }
-        truncateTable();
 
         int dataFileId = insertToControlStartProcess();
         try {
             String csvFilePath = control.getLatestSuccessfulDestination("ScrapDataToCsv");
             System.out.println("Get csvFilePath success: " + csvFilePath);
 
-            String insertQuery = "INSERT INTO weatherdata (Date, Time, Province, Wards, District, Temperature, Feeling, Status, Humidity, Vision" +
-                    ", Wind_speed, Stop_point, Uv_index, Airquality, Last_update_time, Breadcrumb, Url, Path, Dtrequest, Request, Method, Protocols" +
-                    ", Status_code, Host, Server, Ip) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
             String lastUpdateTime = LocalDateTime.now().format(formatter);
 
             DateTimeFormatter formatter2 = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
             String time2 = LocalDateTime.now().format(formatter2);
 
-            int totalLines = countLines(csvFilePath) - 1;
-            int processedLines = 0;
-            int lastReportedProgress = -1;
-            int progressPercentage = 0;
-            try (CSVReader reader = new CSVReader(new FileReader(csvFilePath));
-                 PreparedStatement preparedStatement = connection.prepareStatement(insertQuery)) {
-                String[] nextLine;
-                reader.readNext(); // Skip header line
-                while ((nextLine = reader.readNext()) != null) {
-                    mapCsvLineToPreparedStatement(nextLine, preparedStatement, lastUpdateTime);
-                    preparedStatement.executeUpdate();
-                    processedLines++;
-
-                    progressPercentage = (int) (((double) processedLines / totalLines) * 100);
-                    if (progressPercentage != lastReportedProgress) {
-                        System.out.println("Progress: " + progressPercentage + "% - " + processedLines + "/" + totalLines);
-                        lastReportedProgress = progressPercentage;
-                    }
+            // A sharded scraping run records a manifest listing the CSV file of every shard
+            List<String> csvFilePaths = getCsvFilePaths(csvFilePath);
+            StagingLoadEngine loadEngine = createLoadEngine();
+            long startTime = System.currentTimeMillis();
+            long loadedRows;
+            // Rows whose typed measurements do not parse are quarantined here instead of failing the load
+            try (RejectFile rejects = new RejectFile(Paths.get(AppConfig.getString("staging.rejectDirectory", "rejects"), "rejects_" + time2 + ".csv"))) {
+                loadedRows = loadEngine.load(connection, swap || merge ? SHADOW_TABLE : TABLE, csvFilePaths, lastUpdateTime, rejects);
+                if (rejects.getCount() > 0) {
+                    System.out.println("Rejected " + rejects.getCount() + " rows with invalid measurements, see " + rejects.getFile().toAbsolutePath());
                 }
-
-                System.out.println("Progress: 100% - " + processedLines + "/" + totalLines);
-                String code = "LCTS" + time2 + totalLines;
-                insertToControlSuccessProcess(code, csvFilePath, dataFileId, totalLines);
-
-                control.closeConnection();
-            } catch (CsvValidationException e) {
-                updateDataFilesStatusToEF(dataFileId, e.getMessage());
-                throw new RuntimeException(e);
             }
+            long duration = Math.max(1, System.currentTimeMillis() - startTime);
+            System.out.println("Loaded " + loadedRows + " rows in " + duration + " ms (" + (loadedRows * 1000 / duration) + " rows/s) with "
+                    + loadEngine.getClass().getSimpleName());
+            if (swap) {
+                swapShadowTable();
+            } else if (merge) {
+                long changedRows = mergeShadowTable(lastUpdateTime);
+                System.out.println("Merged " + loadedRows + " rows into " + TABLE + ": " + changedRows + " new or changed");
+            }
+
+            String code = "LCTS" + time2 + loadedRows;
+            insertToControlSuccessProcess(code, csvFilePath, dataFileId, (int) loadedRows);
         } catch (Exception e) {
+            discardFailedLoad(swap || merge);
             updateDataFilesStatusToEF(dataFileId, e.getMessage());
             throw new RuntimeException(e);
         }
 
     }
 
+    /**
+     * Removes the rows of a failed load, which the engines commit batch by batch, so the next steps never read a partial
+     * load: the shadow table of a swap or merge is dropped, leaving 'weatherdata' as it was, and 'weatherdata' itself is
+     * truncated again in truncate mode.
+     *
+     * @param intoShadowTable Whether the load went to the shadow table.
+     */
+    private void discardFailedLoad(boolean intoShadowTable) {
+        try (Statement statement = connection.createStatement()) {
+            if (intoShadowTable) {
+                statement.execute("DROP TABLE IF EXISTS " + SHADOW_TABLE);
+                System.out.println("Dropped " + SHADOW_TABLE + " after the failed load, " + TABLE + " is unchanged.");
+            } else {
+                statement.execute("TRUNCATE TABLE " + TABLE);
+                System.out.println("Truncated " + TABLE + " after the failed load.");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Checks the control gate of the merge mode, which runs once for every successful scraping process instead of once a
+     * day: it is ready when no load is ongoing and the latest successful scraping process of today wrote another file than
+     * the one read by the latest successful load.
+     *
+     * @param control The control database.
+     * @return true if there is a new file to merge, false otherwise.
+     * @throws SQLException If a database access error occurs.
+     */
+    private static boolean isNewScrapeToMerge(ControlDatabaseManager control) throws SQLException {
+        if (control.isProcessOngoing(nameProcess)) {
+            System.out.println("A loadCsvToStaging process is ongoing.");
+            return false;
+        }
+        String destination = control.getLatestSuccessfulDestination("ScrapDataToCsv");
+        if (destination == null) {
+            System.out.println("There are no ScrapDataToCsv Process Successful today");
+            return false;
+        }
+        if (destination.equals(control.getLatestSuccessfulSourcePath(nameProcess))) {
+            System.out.println("The latest csv file was already merged: " + destination);
+            return false;
+        }
+        return true;
+    }
+
     private void updateDataFilesStatusToEF(int dataFileId, String errorMessage) {
-        try {
-            ControlDatabaseManager dbManager = new ControlDatabaseManager("control");
+        try (ControlDatabaseManager dbManager = new ControlDatabaseManager("control")) {
             Timestamp now = Timestamp.valueOf(LocalDateTime.now());
 
             // Update data_files status to 'EF' and update_at to now
             dbManager.updateDataFileStatus(dataFileId, "EF", errorMessage, now);
-
-            dbManager.closeConnection();
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -154,7 +437,7 @@ public class StagingDatabaseManager {
      * @param currentTime       The current time, formatted as a string.
      * @throws SQLException If an error occurs while setting values in the PreparedStatement.
      */
-    private void mapCsvLineToPreparedStatement(String[] csvLine, PreparedStatement preparedStatement, String currentTime) throws SQLException {
+    static void mapCsvLineToPreparedStatement(String[] csvLine, PreparedStatement preparedStatement, String currentTime) throws SQLException {
         // Example mapping based on provided column order
         String date = csvLine[2]; // Date
         String time = csvLine[3]; // Time
@@ -221,7 +504,7 @@ public class StagingDatabaseManager {
      * @param urlString The URL string from which the path is to be extracted.
      * @return The path extracted from the URL.
      */
-    private String extractPathFromUrl(String urlString) {
+    static String extractPathFromUrl(String urlString) {
         try {
             int domainEndIndex = urlString.indexOf("/", urlString.indexOf("//") + 2);
             if (domainEndIndex != -1) {
@@ -235,18 +518,26 @@ public class StagingDatabaseManager {
     }
 
     /**
-     * Counts the number of lines in a file.
+     * Resolves the CSV files to load from the destination of the latest scraping process.
+     * The destination is either a CSV file, or the manifest of a sharded run listing the absolute path of one CSV file per line.
      *
-     * @param filePath The path of the file to be read.
-     * @return The total number of lines in the file.
-     * @throws IOException If an I/O error occurs while reading the file.
+     * @param destination The path recorded by the scraping process.
+     * @return The paths of the CSV files, in the order they are to be loaded.
+     * @throws IOException If the manifest cannot be read.
      */
-    private int countLines(String filePath) throws IOException {
-        int lines = 0;
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            while (reader.readLine() != null) lines++;
+    private List<String> getCsvFilePaths(String destination) throws IOException {
+        List<String> csvFilePaths = new ArrayList<>();
+        if (!destination.endsWith(".manifest")) {
+            csvFilePaths.add(destination);
+            return csvFilePaths;
+        }
+        for (String line : Files.readAllLines(Paths.get(destination), StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                csvFilePaths.add(line.trim());
+            }
         }
-        return lines;
+        System.out.println("Manifest lists " + csvFilePaths.size() + " csv files");
+        return csvFilePaths;
     }
 
     /**
@@ -280,31 +571,13 @@ public class StagingDatabaseManager {
         return preparedStatement.executeQuery();
     }
 
-    private static boolean isReadyToRun() {
-        try {
-            ControlDatabaseManager dbManager = new ControlDatabaseManager("control");
-            if (!dbManager.isReadyToRun(nameProcess)) {
-                System.out.println("Scraping process is not ready to run. Either a process is ongoing or a successful process was completed today.");
-                dbManager.closeConnection();
-                return true;
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return true;
-        }
-        return false;
-    }
-
     private static void insertToControlSuccessProcess(String code, String absolutePath, int dataFileId, int rowCount) {
-        try {
-            ControlDatabaseManager dbManager = new ControlDatabaseManager("control");
+        try (ControlDatabaseManager dbManager = new ControlDatabaseManager("control")) {
 
             LocalDateTime scrapingTime = LocalDateTime.now();
             Timestamp now = Timestamp.valueOf(scrapingTime);
             // Insert into data_file_configs
-            String columns = "id, Date, Time, Province, Wards, District, Temperature, Feeling" +
-                    ", Status, Humidity, Vision, Wind_speed, Stop_point, Uv_index" +
-                    ", Airquality, Last_update_time, Breadcrumb, Url, Path, Dtrequest, Request, Method, Protocols, Status_code, Host, Server, Ip";
+            String columns = "id, " + insertColumns();
             int configId = dbManager.insertDataFileConfig("LoadCsvToStagingConfig", code, "Configuration for load csv file to staging config"
                     , absolutePath, "localhost", null, null, columns
                     , "table weatherdata in staging database", now, 1, 1, "/backup_path");
@@ -314,8 +587,6 @@ public class StagingDatabaseManager {
 
             // Insert into data_checkpoints
             dbManager.insertDataCheckpoint("LoadCsvToStagingCheckpoint", "Load Csv File To Staging Database Completed", code, now, "Completed Load Csv File To Staging Database", now, 1, 1);
-
-            dbManager.closeConnection();
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -346,9 +617,23 @@ public class StagingDatabaseManager {
         }
     }
 
-    public static void main(String[] args) throws SQLException, IOException {
-        StagingDatabaseManager stagingDatabaseManager = new StagingDatabaseManager("staging");
-        stagingDatabaseManager.loadCsvToStaging();
+    /**
+     * Closes the database connection, giving it back to the pool.
+     *
+     * @throws SQLException If a database access error occurs.
+     */
+    @Override
+    public void close() throws SQLException {
+        closeConnection();
+    }
 
+    public static void main(String[] args) throws SQLException, IOException {
+        try (StagingDatabaseManager stagingDatabaseManager = new StagingDatabaseManager("staging")) {
+            if (args.length > 0 && args[0].equals("rollback")) {
+                stagingDatabaseManager.rollbackToPreviousTable();
+                return;
+            }
+            stagingDatabaseManager.loadCsvToStaging();
+        }
     }
 }
@@ -0,0 +1,29 @@
+package LoadDataFromCsvToStaging;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * A way of moving the rows of scraped CSV files into the 'weatherdata' staging table.
+ * Implementations fill every column the same way: the raw CSV fields plus the columns derived from them
+ * (temperature range, feeling, breadcrumb, path, host and server).
+ */
+public interface StagingLoadEngine {
+
+    /**
+     * Loads CSV files into a table shaped like 'weatherdata'. Each file starts with a header line, which is skipped.
+     *
+     * @param connection     The connection to the staging database.
+     * @param tableName      The table to fill: 'weatherdata', or its shadow table when the load is swapped in.
+     * @param csvFilePaths   The CSV files to load, in order.
+     * @param lastUpdateTime The value of the Last_update_time column of every loaded row, formatted as "yyyy-MM-dd HH:mm:ss".
+     * @param rejects        Where rows whose typed columns do not parse go instead of the table, see {@link TypedColumn};
+     *                       unused by engines that load such rows with NULL typed columns.
+     * @return The number of rows loaded.
+     * @throws SQLException If a database access error occurs.
+     * @throws IOException  If a file cannot be read or is not valid CSV.
+     */
+    long load(Connection connection, String tableName, List<String> csvFilePaths, String lastUpdateTime, RejectFile rejects) throws SQLException, IOException;
+}
@@ -0,0 +1,111 @@
+package LoadDataFromCsvToStaging;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Maps the records of a {@link MappedCsvParser} to the insert statement of the staging table, filling the same columns
+ * as {@link StagingDatabaseManager#mapCsvLineToPreparedStatement}.
+ * The derived columns are only rebuilt when a field they come from changed since the previous record, so the rows of
+ * one location share their temperature, feeling, breadcrumb and path Strings instead of concatenating new ones.
+ * With typed columns the measurements are also parsed into the {@link TypedColumn}s, and a row whose measurements do
+ * not parse is not mapped at all.
+ */
+class StagingRowMapper {
+
+    private final String lastUpdateTime;
+    private final boolean typed;
+    private final BigDecimal[] typedValues = new BigDecimal[TypedColumn.values().length];
+    private String temperature;
+    private String feeling;
+    private String breadcrumb;
+    private String path;
+    private boolean first = true;
+
+    /**
+     * Constructs a new StagingRowMapper.
+     *
+     * @param lastUpdateTime The value of the Last_update_time column of every row.
+     * @param typed          Whether the statement also has the typed columns, see {@link StagingDatabaseManager#insertQuery(String)}.
+     */
+    StagingRowMapper(String lastUpdateTime, boolean typed) {
+        this.lastUpdateTime = lastUpdateTime;
+        this.typed = typed;
+    }
+
+    /**
+     * Sets the parameters of the insert statement from the current record of a parser.
+     *
+     * @param row               The parser, positioned on a record.
+     * @param preparedStatement The statement built by {@link StagingDatabaseManager#insertQuery(String)}.
+     * @return null if the row was mapped, or why it was rejected.
+     * @throws SQLException If an error occurs while setting values in the PreparedStatement.
+     */
+    String map(MappedCsvParser row, PreparedStatement preparedStatement) throws SQLException {
+        if (typed) {
+            TypedColumn[] columns = TypedColumn.values();
+            for (int i = 0; i < columns.length; i++) {
+                if (first || row.changed(columns[i].getCsvIndex())) {
+                    try {
+                        typedValues[i] = columns[i].parse(row.get(columns[i].getCsvIndex()));
+                    } catch (IllegalArgumentException e) {
+                        first = true; // The cached values no longer match the previous row
+                        return e.getMessage();
+                    }
+                }
+            }
+        }
+        if (first || row.changed(4) || row.changed(5)) {
+            temperature = row.get(4) + "/" + row.get(5);
+        }
+        if (first || row.changed(5)) {
+            feeling = "Cảm giác như " + row.get(5) + " độ";
+        }
+        if (first || row.changed(0) || row.changed(1)) {
+            breadcrumb = row.isEmpty(1) ? row.get(0) + ", Việt Nam" : row.get(1) + ", " + row.get(0) + ", Việt Nam";
+        }
+        if (first || row.changed(14)) {
+            path = StagingDatabaseManager.extractPathFromUrl(row.get(14));
+        }
+        first = false;
+
+        preparedStatement.setString(1, row.get(2)); // Date
+        preparedStatement.setString(2, row.get(3)); // Time
+        preparedStatement.setString(3, row.get(0)); // Province
+        preparedStatement.setString(4, null); // Wards
+        preparedStatement.setString(5, row.get(1)); // District
+        preparedStatement.setString(6, temperature);
+        preparedStatement.setString(7, feeling);
+        preparedStatement.setString(8, row.get(6)); // Status
+        preparedStatement.setString(9, row.get(7)); // Humidity
+        preparedStatement.setString(10, row.get(10)); // Vision
+        preparedStatement.setString(11, row.get(8)); // Wind_speed
+        preparedStatement.setString(12, row.get(12)); // Stop_point
+        preparedStatement.setString(13, row.get(9)); // Uv_index
+        preparedStatement.setString(14, row.get(13)); // Airquality
+        preparedStatement.setString(15, lastUpdateTime);
+        preparedStatement.setString(16, breadcrumb);
+        preparedStatement.setString(17, row.get(14)); // Url
+        preparedStatement.setString(18, path);
+        preparedStatement.setString(19, null); // Dtrequest
+        preparedStatement.setString(20, null); // Request
+        preparedStatement.setString(21, null); // Method
+        preparedStatement.setString(22, null); // Protocols
+        preparedStatement.setString(23, null); // Status_code
+        preparedStatement.setString(24, "localhost"); // Host
+        preparedStatement.setString(25, "localhost"); // Server
+        preparedStatement.setString(26, row.get(15)); // Ip
+        if (typed) {
+            for (int i = 0; i < typedValues.length; i++) {
+                if (typedValues[i] == null) {
+                    preparedStatement.setNull(27 + i, Types.DECIMAL);
+                } else {
+                    preparedStatement.setBigDecimal(27 + i, typedValues[i]);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,101 @@
+package LoadDataFromCsvToStaging;
+
+import java.math.BigDecimal;
+
+/**
+ * A numeric column of the staging table, parsed at load time from a measurement of the scraped CSV file.
+ * The scraper strips the units of the measurements ({@code HourlyWeatherInfo.removeUnits}); a value still carrying its
+ * unit is accepted. The placeholders the scraper writes for a measurement missing from the page ("Không có dữ liệu …",
+ * "Không rõ …") become NULL with every engine. Any other text, or a number outside the plausible range of the
+ * measurement, rejects the row: the insert engines write it to the {@link RejectFile}; {@link LoadDataInfileEngine},
+ * which cannot leave a row out, loads it with NULL in the typed column instead, see {@link #sqlExpression}.
+ * <p>
+ * The wind speed is stored in m/s: the site labels it "km/giờ", which the scraper strips, but the recorded values
+ * (0.01 to 11.77, median 2.09, over six days of scraped files) are the m/s figures of its data source.
+ */
+public enum TypedColumn {
+    TEMPERATURE_MIN("Temperature_min", 4, "°C", -30, 60),
+    TEMPERATURE_MAX("Temperature_max", 5, "°C", -30, 60),
+    HUMIDITY("Humidity_percent", 7, "%", 0, 100),
+    WIND_SPEED("Wind_speed_ms", 8, "km/giờ", 0, 100),
+    UV_INDEX("Uv_index_value", 9, "", 0, 20),
+    VISIBILITY("Visibility_km", 10, "km", 0, 100),
+    PRESSURE("Pressure_mb", 11, "mb", 850, 1100);
+
+    /**
+     * The beginnings of the placeholders written by the scraper instead of a measurement it could not find.
+     */
+    private static final String[] PLACEHOLDER_PREFIXES = {"Không có dữ liệu", "Không rõ"};
+
+    private final String columnName;
+    private final int csvIndex;
+    private final String unit;
+    private final double min;
+    private final double max;
+
+    TypedColumn(String columnName, int csvIndex, String unit, double min, double max) {
+        this.columnName = columnName;
+        this.csvIndex = csvIndex;
+        this.unit = unit;
+        this.min = min;
+        this.max = max;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public int getCsvIndex() {
+        return csvIndex;
+    }
+
+    /**
+     * Parses a measurement.
+     *
+     * @param text The field of the CSV file.
+     * @return The value, or null if the field is empty or a placeholder of the scraper.
+     * @throws IllegalArgumentException If the field is not a number in the unit of the column, or is out of range.
+     */
+    public BigDecimal parse(String text) {
+        String number = text.trim();
+        for (String prefix : PLACEHOLDER_PREFIXES) {
+            if (number.startsWith(prefix)) {
+                return null;
+            }
+        }
+        if (!unit.isEmpty() && number.endsWith(unit)) {
+            number = number.substring(0, number.length() - unit.length()).trim();
+        }
+        if (number.isEmpty()) {
+            return null;
+        }
+        BigDecimal value;
+        try {
+            value = new BigDecimal(number);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(columnName + " '" + text + "' is not a number");
+        }
+        if (value.doubleValue() < min || value.doubleValue() > max) {
+            throw new IllegalArgumentException(columnName + " '" + text + "' is outside " + (int) min + ".." + (int) max);
+        }
+        return value;
+    }
+
+    /**
+     * Builds the SQL expression computing the column from a user variable holding the CSV field, for LOAD DATA.
+     * A placeholder of the scraper becomes NULL, as with {@link #parse}. LOAD DATA cannot leave a row out, so there a
+     * value that does not parse or is out of range becomes NULL as well.
+     *
+     * @param variable The user variable, e.g. "@humidity".
+     * @return The expression.
+     */
+    String sqlExpression(String variable) {
+        StringBuilder placeholder = new StringBuilder();
+        for (String prefix : PLACEHOLDER_PREFIXES) {
+            placeholder.append(placeholder.length() == 0 ? "" : " OR ").append("TRIM(").append(variable).append(") LIKE '").append(prefix).append("%'");
+        }
+        String number = unit.isEmpty() ? "TRIM(" + variable + ")" : "TRIM(TRIM(TRAILING '" + unit + "' FROM TRIM(" + variable + ")))";
+        return "IF(" + placeholder + ", NULL, IF(" + number + " REGEXP '^-?[0-9]+(\\\\.[0-9]+)?$' AND " + number + " BETWEEN " + min + " AND " + max
+                + ", " + number + ", NULL))";
+    }
+}
@@ -1,5 +1,7 @@
 package LoadDataFromCsvToStaging;
 
+import java.math.BigDecimal;
+
 public class WeatherData {
     private int id;
     private String date;
@@ -28,6 +30,13 @@ public class WeatherData {
     private String host;
     private String server;
     private String ip;
+    private BigDecimal temperatureMin;
+    private BigDecimal temperatureMax;
+    private BigDecimal humidityPercent;
+    private BigDecimal windSpeedKmh;
+    private BigDecimal uvIndexValue;
+    private BigDecimal visibilityKm;
+    private BigDecimal pressureMb;
 
     public WeatherData() {
     }
@@ -248,6 +257,62 @@ public class WeatherData {
         this.ip = ip;
     }
 
+    public BigDecimal getTemperatureMin() {
+        return temperatureMin;
+    }
+
+    public void setTemperatureMin(BigDecimal temperatureMin) {
+        this.temperatureMin = temperatureMin;
+    }
+
+    public BigDecimal getTemperatureMax() {
+        return temperatureMax;
+    }
+
+    public void setTemperatureMax(BigDecimal temperatureMax) {
+        this.temperatureMax = temperatureMax;
+    }
+
+    public BigDecimal getHumidityPercent() {
+        return humidityPercent;
+    }
+
+    public void setHumidityPercent(BigDecimal humidityPercent) {
+        this.humidityPercent = humidityPercent;
+    }
+
+    public BigDecimal getWindSpeedKmh() {
+        return windSpeedKmh;
+    }
+
+    public void setWindSpeedKmh(BigDecimal windSpeedKmh) {
+        this.windSpeedKmh = windSpeedKmh;
+    }
+
+    public BigDecimal getUvIndexValue() {
+        return uvIndexValue;
+    }
+
+    public void setUvIndexValue(BigDecimal uvIndexValue) {
+        this.uvIndexValue = uvIndexValue;
+    }
+
+    public BigDecimal getVisibilityKm() {
+        return visibilityKm;
+    }
+
+    public void setVisibilityKm(BigDecimal visibilityKm) {
+        this.visibilityKm = visibilityKm;
+    }
+
+    public BigDecimal getPressureMb() {
+        return pressureMb;
+    }
+
+    public void setPressureMb(BigDecimal pressureMb) {
+        this.pressureMb = pressureMb;
+    }
+
     @Override
     public String toString() {
         return "WeatherData{" +
@@ -278,6 +343,13 @@ public class WeatherData {
                 ", host='" + host + '\'' +
                 ", server='" + server + '\'' +
                 ", ip='" + ip + '\'' +
+                ", temperatureMin=" + temperatureMin +
+                ", temperatureMax=" + temperatureMax +
+                ", humidityPercent=" + humidityPercent +
+                ", windSpeedKmh=" + windSpeedKmh +
+                ", uvIndexValue=" + uvIndexValue +
+                ", visibilityKm=" + visibilityKm +
+                ", pressureMb=" + pressureMb +
                 '}';
     }
 }
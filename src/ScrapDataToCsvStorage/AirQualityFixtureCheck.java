@@ -0,0 +1,133 @@
+package ScrapDataToCsvStorage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+/**
+ * Checks on fixture pages that a location is scraped with one page load when its hourly page carries the air quality,
+ * and that the main page is loaded only when it does not.
+ * The pages in 'dataCsvAndSqlAll/fixtures/air-quality' are served by a {@link FixtureServer} without injected latency
+ * or errors and scraped with {@link HttpScrapeEngine#scrapeLocation}: "ha-noi" has the air quality on its hourly page,
+ * "ho-chi-minh" only on its main page. The check prints each failed expectation and exits with status 1 if any failed.
+ * <p>
+ * The rows of "ha-noi" are also checked for the dates derived from the day marker of its midnight block.
+ * <p>
+ * The committed pages only hold the elements the engines select. To see how many pages of the live site carry the air
+ * quality on their hourly page, pass a directory recorded with {@code FixtureServer record}: every recorded hourly page
+ * is then also inspected and counted, and its block labels are checked to be hours, with a "dd/mm" day marker only
+ * right after 23:00.
+ * <p>
+ * Usage: {@code AirQualityFixtureCheck [fixture directory]}
+ */
+public class AirQualityFixtureCheck {
+
+    private static int failures;
+
+    /**
+     * Runs the check.
+     *
+     * @param args Optionally, a fixture directory recorded from the live site to inspect as well.
+     * @throws IOException If the fixture server cannot be started or a page cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        Path fixtures = Paths.get("dataCsvAndSqlAll", "fixtures", "air-quality");
+        FixtureServer server = new FixtureServer(fixtures, 0, 0, 0, 0, 0, 42);
+        server.start(0);
+        HttpScrapeEngine engine = new HttpScrapeEngine(Duration.ofSeconds(10));
+        AirQualitySources sources = AirQualitySources.shared();
+        try {
+            sources.reset();
+            long servedBefore = server.getServedPages();
+            List<HourlyWeatherInfo> rows = engine.scrapeLocation(server.getOrigin() + "/ha-noi", server.getOrigin() + "/ha-noi/theo-gio", "Hà Nội", "", null);
+            expect("rows of ha-noi", 4, rows.size());
+            expect("air quality of ha-noi", "Trung bình", rows.isEmpty() ? null : rows.get(0).getAirQuality());
+            expect("pages loaded for ha-noi", 1L, server.getServedPages() - servedBefore);
+            expect("air quality from the hourly page", 1L, sources.getFromHourlyPage());
+            expect("fallbacks to the main page", 0L, sources.getFromMainPage());
+            // The blocks of the first day only show their hour; the block at midnight names the next day as "dd/mm"
+            LocalDate today = LocalDate.now();
+            expect("dates of ha-noi", List.of(today.toString(), today.toString(), today.toString(), today.plusDays(1).toString()),
+                    rows.stream().map(HourlyWeatherInfo::getDate).collect(Collectors.toList()));
+            expect("hours of ha-noi", List.of("21:00", "22:00", "23:00", "00:00"),
+                    rows.stream().map(HourlyWeatherInfo::getTime).collect(Collectors.toList()));
+
+            servedBefore = server.getServedPages();
+            rows = engine.scrapeLocation(server.getOrigin() + "/ho-chi-minh", server.getOrigin() + "/ho-chi-minh/theo-gio", "Hồ Chí Minh", "", null);
+            expect("rows of ho-chi-minh", 4, rows.size());
+            expect("air quality of ho-chi-minh", "Kém", rows.isEmpty() ? null : rows.get(0).getAirQuality());
+            expect("pages loaded for ho-chi-minh", 2L, server.getServedPages() - servedBefore);
+            expect("fallbacks to the main page", 1L, sources.getFromMainPage());
+        } finally {
+            engine.shutdown();
+            server.stop();
+            sources.reset();
+        }
+
+        if (args.length > 0) {
+            inspectRecordedPages(Paths.get(args[0]));
+        }
+        System.out.println(failures == 0 ? "Air quality fixture check passed" : failures + " expectations failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void expect(String what, Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            failures++;
+            System.err.println("FAILED " + what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    /**
+     * Counts the recorded hourly pages that carry the air quality.
+     */
+    private static void inspectRecordedPages(Path directory) throws IOException {
+        List<Path> hourlyPages;
+        try (Stream<Path> files = Files.walk(directory)) {
+            hourlyPages = files.filter(file -> file.getFileName().toString().equals("theo-gio.html")).sorted().collect(Collectors.toList());
+        }
+        int withAirQuality = 0;
+        for (Path page : hourlyPages) {
+            Document document = Jsoup.parse(Files.readString(page, StandardCharsets.UTF_8));
+            if (HttpScrapeEngine.findAirQuality(document) != null) {
+                withAirQuality++;
+            } else {
+                System.out.println("No air quality on " + directory.relativize(page));
+            }
+            checkDayMarkers(directory.relativize(page), document);
+        }
+        System.out.println(withAirQuality + " of " + hourlyPages.size() + " recorded hourly pages in " + directory + " carry the air quality");
+    }
+
+    /**
+     * Checks the assumption the engines derive the row dates from: a forecast block is labelled with its hour ("HH:mm"),
+     * except the block at midnight, which is labelled with its day ("dd/mm") and starts a new day.
+     */
+    private static void checkDayMarkers(Path page, Document document) {
+        String previous = null;
+        for (Element label : document.select("details.weather-day .summary-day span")) {
+            String text = label.text().trim();
+            if (text.matches("\\d{2}/\\d{2}")) {
+                if (previous != null && !previous.equals("23:00")) {
+                    failures++;
+                    System.err.println("FAILED day marker on " + page + ": " + text + " follows " + previous + " instead of 23:00");
+                }
+            } else if (!text.matches("\\d{2}:\\d{2}")) {
+                failures++;
+                System.err.println("FAILED block label on " + page + ": " + text + " is neither an hour nor a day");
+            }
+            previous = text;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ScrapDataToCsvStorage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts where the engines found the air quality of the locations they scraped.
+ * A location costs one page load when its hourly page carries the air quality, and two when the main page has to be
+ * loaded as well, so the share of fallbacks tells whether the single-page-load scrape actually saves anything.
+ * The first fallback of a run is logged with its URL; the totals are printed when the engine shuts down.
+ */
+public class AirQualitySources {
+
+    private static final AirQualitySources SHARED = new AirQualitySources();
+
+    private final AtomicLong fromHourlyPage = new AtomicLong();
+    private final AtomicLong fromMainPage = new AtomicLong();
+
+    /**
+     * Returns the counters of the engines of this process.
+     *
+     * @return The shared counters.
+     */
+    public static AirQualitySources shared() {
+        return SHARED;
+    }
+
+    /**
+     * Counts a location whose air quality was read from its hourly page.
+     */
+    public void recordHourlyPage() {
+        fromHourlyPage.incrementAndGet();
+    }
+
+    /**
+     * Counts a location whose hourly page has no air quality, so that its main page had to be loaded as well.
+     *
+     * @param hourlyUrl The URL of the hourly page lacking the air quality.
+     */
+    public void recordMainPageFallback(String hourlyUrl) {
+        if (fromMainPage.incrementAndGet() == 1) {
+            System.err.println("No air quality on the hourly page " + hourlyUrl + ", loading the main page as well;"
+                    + " locations falling back cost two page loads");
+        }
+    }
+
+    public long getFromHourlyPage() {
+        return fromHourlyPage.get();
+    }
+
+    public long getFromMainPage() {
+        return fromMainPage.get();
+    }
+
+    /**
+     * Clears the counters, e.g. between runs.
+     */
+    public void reset() {
+        fromHourlyPage.set(0);
+        fromMainPage.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "Air quality: " + fromHourlyPage.get() + " locations from the hourly page, " + fromMainPage.get() + " from the main page (fallback)";
+    }
+}
@@ -0,0 +1,147 @@
+package ScrapDataToCsvStorage;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import DBConnectControlDB.AppConfig;
+
+/**
+ * Pauses the requests to a host while its error rate is too high.
+ * The outcomes of the last 'scraper.breaker.windowSize' requests are kept; once at least 'scraper.breaker.minimumCalls'
+ * of them are known and the share of failures reaches 'scraper.breaker.failureRate', the breaker opens and every fetch
+ * to the host waits for 'scraper.breaker.openSeconds'. After that pause requests flow again in a trial state:
+ * the next success closes the breaker, the next failure opens it for another pause.
+ */
+public class CircuitBreaker {
+
+    private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    private enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final String host;
+    private final boolean[] failureWindow;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openMillis;
+    private State state = State.CLOSED;
+    private int nextSlot;
+    private int calls;
+    private int failures;
+    private long openUntil;
+
+    /**
+     * Constructs a new CircuitBreaker.
+     *
+     * @param host                 The host guarded by the breaker, used in log messages.
+     * @param windowSize           The number of most recent outcomes taken into account.
+     * @param minimumCalls         The number of outcomes needed before the breaker can open.
+     * @param failureRateThreshold The share of failures, between 0 and 1, at which the breaker opens.
+     * @param openMillis           How long requests are paused once the breaker opens.
+     */
+    public CircuitBreaker(String host, int windowSize, int minimumCalls, double failureRateThreshold, long openMillis) {
+        this.host = host;
+        this.failureWindow = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, failureWindow.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Returns the shared breaker of the host of a URL, creating it from the 'scraper.breaker.*' settings on first use.
+     *
+     * @param url A URL on the host.
+     * @return The breaker of the host.
+     */
+    public static CircuitBreaker forUrl(String url) {
+        String host;
+        try {
+            host = URI.create(url).getHost();
+        } catch (IllegalArgumentException e) {
+            host = null;
+        }
+        return BREAKERS.computeIfAbsent(host != null ? host : "", h -> new CircuitBreaker(h,
+                AppConfig.getInt("scraper.breaker.windowSize", 20),
+                AppConfig.getInt("scraper.breaker.minimumCalls", 10),
+                AppConfig.getDouble("scraper.breaker.failureRate", 0.5),
+                AppConfig.getLong("scraper.breaker.openSeconds", 30) * 1000));
+    }
+
+    /**
+     * Waits until requests to the host are allowed.
+     *
+     * @throws InterruptedException If the thread is interrupted while the breaker is open.
+     */
+    public void awaitPermission() throws InterruptedException {
+        while (true) {
+            long waitMillis;
+            synchronized (this) {
+                if (state != State.OPEN) {
+                    return;
+                }
+                waitMillis = openUntil - System.currentTimeMillis();
+                if (waitMillis <= 0) {
+                    state = State.HALF_OPEN;
+                    System.out.println("Circuit breaker for " + host + " half-open, trying requests again");
+                    return;
+                }
+            }
+            Thread.sleep(waitMillis);
+        }
+    }
+
+    /**
+     * Records a successful request.
+     */
+    public synchronized void recordSuccess() {
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            resetWindow();
+            System.out.println("Circuit breaker for " + host + " closed");
+            return;
+        }
+        record(false);
+    }
+
+    /**
+     * Records a failed request, opening the breaker if the error rate reaches the threshold.
+     */
+    public synchronized void recordFailure() {
+        if (state == State.HALF_OPEN) {
+            open("the trial request failed");
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && calls >= minimumCalls && failures >= failureRateThreshold * calls) {
+            open(failures + "/" + calls + " requests failed");
+        }
+    }
+
+    private void record(boolean failed) {
+        if (calls == failureWindow.length) {
+            if (failureWindow[nextSlot]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        failureWindow[nextSlot] = failed;
+        if (failed) {
+            failures++;
+        }
+        nextSlot = (nextSlot + 1) % failureWindow.length;
+    }
+
+    private void open(String reason) {
+        state = State.OPEN;
+        openUntil = System.currentTimeMillis() + openMillis;
+        System.err.println("Circuit breaker for " + host + " opened (" + reason + "), pausing requests for " + openMillis + " ms");
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        calls = 0;
+        failures = 0;
+        nextSlot = 0;
+    }
+}
@@ -0,0 +1,310 @@
+package ScrapDataToCsvStorage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams scraped rows to a CSV file while the run is still in progress.
+ * Workers hand over the rows of each location with {@link #write(List)}; a single writer thread takes them from a bounded
+ * queue and appends them to a '.part' file through a buffered UTF-8 writer on a {@link FileChannel}. Only the rows waiting
+ * in the queue are kept in memory, and the '.part' file holds everything scraped so far if the run dies.
+ * {@link #complete(Path)} moves the finished file to its final name in one atomic rename.
+ * <p>
+ * Next to the '.part' file the writer keeps a journal of the locations whose rows are on disk. Each line holds the file
+ * length and row count after the location was written, so a failed run can be resumed: the '.part' file is cut back to
+ * the last journaled length, dropping any half-written rows, and the journaled locations are skipped.
+ */
+public class CsvStreamWriter {
+
+    /**
+     * The header line of the CSV files produced by the scraper.
+     */
+    public static final String HEADER = "Province,District,Date,Time,TemperatureMin,TemperatureMax,Description,Humidity,WindSpeed,UVIndex,Visibility,Pressure,StopPoint,AirQuality,URL,IP";
+
+    /**
+     * Marks the end of the row stream; the writer thread stops when it takes it.
+     */
+    private static final Batch END_OF_ROWS = new Batch("", new ArrayList<>());
+
+    /**
+     * The rows of one location, identified by the location's hourly URL.
+     */
+    private static class Batch {
+        private final String location;
+        private final List<HourlyWeatherInfo> rows;
+
+        private Batch(String location, List<HourlyWeatherInfo> rows) {
+            this.location = location;
+            this.rows = rows;
+        }
+    }
+
+    private final Path partFile;
+    private final Path journalFile;
+    private final String ipAddress;
+    private final BlockingQueue<Batch> batches;
+    private final AtomicInteger rowCount = new AtomicInteger(0);
+    private final FileChannel channel;
+    private final BufferedWriter writer;
+    private final BufferedWriter journal;
+    private final Set<String> completedLocations;
+    private final List<String> unflushedLocations = new ArrayList<>();
+    private final Thread writerThread;
+    private volatile IOException failure;
+    private boolean stopped;
+
+    /**
+     * Opens the '.part' file, writes the header if it starts a new file and starts the writer thread.
+     *
+     * @param partFile      The file receiving the rows until the run is complete.
+     * @param ipAddress     The IP address written into the IP column of every row.
+     * @param queueCapacity The maximum number of batches waiting to be written; workers block when it is reached.
+     * @param resume        Whether to continue a '.part' file left by a failed run instead of starting a new one.
+     * @throws IOException If the file cannot be opened.
+     */
+    public CsvStreamWriter(Path partFile, String ipAddress, int queueCapacity, boolean resume) throws IOException {
+        this.partFile = partFile;
+        this.journalFile = partFile.resolveSibling(partFile.getFileName() + ".journal");
+        this.ipAddress = ipAddress;
+        this.batches = new ArrayBlockingQueue<>(queueCapacity);
+
+        Path directory = partFile.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+
+        List<String> journalLines = resume && Files.exists(partFile) ? readJournal(journalFile) : new ArrayList<>();
+        Set<String> completed = new HashSet<>();
+        long resumeOffset = 0;
+        for (String line : journalLines) {
+            String[] fields = line.split("\t", 3);
+            resumeOffset = Long.parseLong(fields[0]);
+            rowCount.set(Integer.parseInt(fields[1]));
+            completed.add(fields[2]);
+        }
+        this.completedLocations = Collections.unmodifiableSet(completed);
+
+        this.channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), 64 * 1024));
+        this.journal = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        if (resumeOffset > 0) {
+            // Drop whatever was written after the last journaled location, then rewrite the intact journal lines
+            channel.truncate(resumeOffset);
+            channel.position(resumeOffset);
+            for (String line : journalLines) {
+                journal.write(line);
+                journal.write('\n');
+            }
+            journal.flush();
+            System.out.println("Resuming " + partFile + ": " + completed.size() + " locations, " + rowCount.get() + " rows already written");
+        } else {
+            channel.truncate(0);
+            writer.write('\ufeff');
+            writer.write(HEADER);
+            writer.write('\n');
+        }
+
+        this.writerThread = new Thread(this::writeBatches, "csv-writer");
+        writerThread.start();
+    }
+
+    /**
+     * Reads the intact lines of a journal, stopping at the first line that was cut short by a crash.
+     */
+    private static List<String> readJournal(Path journalFile) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (!Files.exists(journalFile)) {
+            return lines;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 3);
+                try {
+                    if (fields.length != 3 || Long.parseLong(fields[0]) <= 0 || Integer.parseInt(fields[1]) < 0) {
+                        break;
+                    }
+                } catch (NumberFormatException e) {
+                    break;
+                }
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the locations whose rows were already written by the run being resumed.
+     *
+     * @return The hourly URLs of the completed locations; empty unless the writer resumed a '.part' file.
+     */
+    public Set<String> getCompletedLocations() {
+        return completedLocations;
+    }
+
+    /**
+     * Queues the rows of one location for writing, waiting while the queue is full.
+     * The location is journaled as completed once its rows are flushed to the file. Locations without rows are not
+     * journaled, so a resumed run tries them again.
+     * If the writer has failed the rows are dropped; the failure is reported by {@link #complete(Path)}.
+     *
+     * @param location The hourly URL identifying the location.
+     * @param rows     The rows to append.
+     * @throws InterruptedException If the thread is interrupted while waiting for space in the queue.
+     */
+    public void write(String location, List<HourlyWeatherInfo> rows) throws InterruptedException {
+        if (!rows.isEmpty() && failure == null) {
+            batches.put(new Batch(location, rows));
+        }
+    }
+
+    /**
+     * Returns the number of rows written to the file so far. Rows still queued for the writer thread are not counted
+     * yet; use the count returned by {@link #finish()} for the final number.
+     *
+     * @return The running row count.
+     */
+    public int getRowCount() {
+        return rowCount.get();
+    }
+
+    /**
+     * Writer thread loop: appends each batch and flushes whenever the queue runs dry,
+     * so the file on disk is never far behind the scraping workers.
+     */
+    private void writeBatches() {
+        try {
+            Batch batch;
+            while ((batch = batches.take()) != END_OF_ROWS) {
+                if (failure != null) {
+                    continue; // Keep draining so that the workers never block on a dead writer
+                }
+                try {
+                    for (HourlyWeatherInfo info : batch.rows) {
+                        writeRow(info);
+                    }
+                    rowCount.addAndGet(batch.rows.size());
+                    unflushedLocations.add(batch.location);
+                    if (batches.isEmpty()) {
+                        flush();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error while writing to CSV file: " + e.getMessage());
+                    failure = e;
+                } catch (RuntimeException e) {
+                    // A bad row must not kill the thread: the workers would then block forever on the full queue
+                    System.err.println("Error while writing to CSV file: " + e);
+                    failure = new IOException("Could not write the rows of " + batch.location, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flushes the buffered rows to the file, then journals the locations they belong to with the new file length.
+     * The rows always reach the file before their journal line, so the journal never claims rows that are not on disk.
+     */
+    private void flush() throws IOException {
+        writer.flush();
+        long offset = channel.position();
+        for (String location : unflushedLocations) {
+            journal.write(offset + "\t" + rowCount.get() + "\t" + location + "\n");
+        }
+        journal.flush();
+        unflushedLocations.clear();
+    }
+
+    private void writeRow(HourlyWeatherInfo info) throws IOException {
+        writer.append(info.getProvince()).append(",").append(info.getDistrict()).append(",")
+                .append(info.getDate()).append(",").append(info.getTime()).append(",")
+                .append(info.getTemperatureMin()).append(",").append(info.getTemperatureMax()).append(",")
+                .append(info.getDescription()).append(",").append(info.getHumidity()).append(",")
+                .append(info.getWindSpeed()).append(",").append(info.getUvIndex()).append(",")
+                .append(info.getVisibility()).append(",").append(info.getPressure()).append(",")
+                .append(info.getStopPoint()).append(",").append(info.getAirQuality()).append(",")
+                .append(info.getUrl()).append(",").append(ipAddress).append("\n");
+    }
+
+    /**
+     * Stops the writer thread once every queued batch is written and closes the file.
+     */
+    private synchronized void stop() throws IOException, InterruptedException {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        batches.put(END_OF_ROWS);
+        writerThread.join();
+        try {
+            if (failure == null) {
+                flush();
+            }
+            channel.force(false);
+        } finally {
+            writer.close();
+            journal.close();
+        }
+    }
+
+    /**
+     * Writes the remaining rows and closes the file, leaving it under its partial name.
+     * Must be called after every worker has finished writing. Calling it again returns the same count.
+     *
+     * @return The final number of rows in the file, to build its final name from.
+     * @throws IOException          If a row could not be written.
+     * @throws InterruptedException If the thread is interrupted while waiting for the writer thread.
+     */
+    public int finish() throws IOException, InterruptedException {
+        stop();
+        if (failure != null) {
+            throw failure;
+        }
+        return rowCount.get();
+    }
+
+    /**
+     * Finishes the file, see {@link #finish()}, and atomically renames it to its final name.
+     *
+     * @param targetFile The final path of the CSV file.
+     * @throws IOException          If a row could not be written or the file cannot be renamed.
+     * @throws InterruptedException If the thread is interrupted while waiting for the writer thread.
+     */
+    public void complete(Path targetFile) throws IOException, InterruptedException {
+        finish();
+        Files.move(partFile, targetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(journalFile);
+    }
+
+    /**
+     * Stops writing after a failed run. The '.part' file and its journal are left in place with the rows scraped so far,
+     * ready to be resumed.
+     */
+    public void abort() {
+        try {
+            stop();
+        } catch (IOException e) {
+            System.err.println("Error while closing CSV file: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ScrapDataToCsvStorage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+
+/**
+ * Compares the two Selenium extraction paths on saved hourly pages: one findElement call per field
+ * ({@link SeleniumScrapeEngine#extractWithElements}) against a single script call per page
+ * ({@link SeleniumScrapeEngine#extractWithScript}).
+ * Each page is loaded from disk into headless Chrome, so the timings contain no network time. Both paths must produce
+ * the same rows; a mismatch is reported.
+ * <p>
+ * Usage: {@code ExtractionBenchmark <directory with saved .html pages> [iterations]}
+ */
+public class ExtractionBenchmark {
+
+    /**
+     * Runs the comparison and prints the mean extraction time per page of each path.
+     *
+     * @param args The directory holding the saved pages and, optionally, the number of measured iterations.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: ExtractionBenchmark <directory with saved .html pages> [iterations]");
+            return;
+        }
+        File[] pages = new File(args[0]).listFiles((dir, name) -> name.endsWith(".html"));
+        if (pages == null || pages.length == 0) {
+            System.err.println("No .html pages found in " + args[0]);
+            return;
+        }
+        Arrays.sort(pages);
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        WebDriver driver = new ChromeDriver(SeleniumScrapeEngine.createChromeOption());
+        try {
+            // Warm up both paths once per page before measuring
+            for (File page : pages) {
+                checkSameRows(driver, page);
+            }
+
+            long elementNanos = 0;
+            long scriptNanos = 0;
+            for (int i = 0; i < iterations; i++) {
+                for (File page : pages) {
+                    elementNanos += time(driver, page, d -> SeleniumScrapeEngine.extractWithElements(d, page.getName(), "", "", ""));
+                    scriptNanos += time(driver, page, d -> SeleniumScrapeEngine.extractWithScript(d, page.getName(), "", "", ""));
+                }
+            }
+
+            int measured = iterations * pages.length;
+            System.out.println("Pages: " + pages.length + ", iterations: " + iterations);
+            System.out.printf("findElement per field: %.1f ms/page%n", elementNanos / 1e6 / measured);
+            System.out.printf("single script call:    %.1f ms/page%n", scriptNanos / 1e6 / measured);
+            System.out.printf("speedup:               %.1fx%n", (double) elementNanos / scriptNanos);
+        } finally {
+            driver.quit();
+        }
+    }
+
+    /**
+     * Loads a page and measures one extraction, excluding the page load.
+     */
+    private static long time(WebDriver driver, File page, Function<WebDriver, List<HourlyWeatherInfo>> extraction) {
+        driver.get(page.toURI().toString());
+        long start = System.nanoTime();
+        extraction.apply(driver);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Extracts a page with both paths and reports the rows that differ.
+     */
+    private static void checkSameRows(WebDriver driver, File page) {
+        driver.get(page.toURI().toString());
+        List<String> elementRows = toLines(SeleniumScrapeEngine.extractWithElements(driver, page.getName(), "", "", ""));
+        driver.get(page.toURI().toString());
+        List<String> scriptRows = toLines(SeleniumScrapeEngine.extractWithScript(driver, page.getName(), "", "", ""));
+        if (!elementRows.equals(scriptRows)) {
+            System.err.println("Extraction paths differ on " + page.getName() + ":");
+            System.err.println("  findElement: " + elementRows);
+            System.err.println("  script:      " + scriptRows);
+        }
+    }
+
+    private static List<String> toLines(List<HourlyWeatherInfo> rows) {
+        List<String> lines = new ArrayList<>();
+        for (HourlyWeatherInfo info : rows) {
+            lines.add(String.join(",", info.getDate(), info.getTime(), info.getTemperatureMin(), info.getTemperatureMax(),
+                    info.getDescription(), info.getHumidity(), info.getWindSpeed(), info.getUvIndex(),
+                    info.getVisibility(), info.getPressure(), info.getStopPoint()));
+        }
+        return lines;
+    }
+}
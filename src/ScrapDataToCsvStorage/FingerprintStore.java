@@ -0,0 +1,284 @@
+package ScrapDataToCsvStorage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * On-disk record of the last version seen of every hourly page: a hash of its forecast section, the HTTP validators
+ * (ETag and Last-Modified) and the rows extracted from it.
+ * When a page comes back unchanged the engines reuse the stored rows instead of extracting every forecast block again,
+ * and the HTTP engine can skip the download altogether with a conditional request.
+ * <p>
+ * Entries are only reused on the day they were recorded. The rows hold the dates derived while extracting them, and the
+ * blocks of the first day on a page only show their hour (only the block at midnight names its day, as "dd/mm"), so an
+ * unchanged page on a later day would give its rows the wrong dates. The air quality is only covered by the fingerprint
+ * when it was read from the hourly page; each entry records where it came from, and rows whose air quality came from
+ * the main page get it read again when reused.
+ */
+public class FingerprintStore {
+
+    /**
+     * The version of the file format. Files written with another version are ignored.
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    /**
+     * What was recorded for one page.
+     */
+    public static class Entry {
+        private final LocalDate recordedOn;
+        private final String fingerprint;
+        private final String etag;
+        private final String lastModified;
+        private final boolean airQualityFromHourlyPage;
+        private final List<HourlyWeatherInfo> rows;
+
+        private Entry(LocalDate recordedOn, String fingerprint, String etag, String lastModified, boolean airQualityFromHourlyPage,
+                      List<HourlyWeatherInfo> rows) {
+            this.recordedOn = recordedOn;
+            this.fingerprint = fingerprint;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.airQualityFromHourlyPage = airQualityFromHourlyPage;
+            this.rows = Collections.unmodifiableList(rows);
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Tells whether the air quality of the rows was read from the hourly page, and is therefore covered by the fingerprint.
+         *
+         * @return true if it came from the hourly page, false if from the location's main page.
+         */
+        public boolean isAirQualityFromHourlyPage() {
+            return airQualityFromHourlyPage;
+        }
+
+        /**
+         * Returns a copy of the stored rows, so that callers may change them without touching the store.
+         *
+         * @return The rows extracted from the page when it was recorded.
+         */
+        public List<HourlyWeatherInfo> copyRows() {
+            List<HourlyWeatherInfo> copies = new ArrayList<>();
+            for (HourlyWeatherInfo row : rows) {
+                copies.add(fromFields(toFields(row)));
+            }
+            return copies;
+        }
+    }
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger unchangedPages = new AtomicInteger();
+    private final AtomicInteger changedPages = new AtomicInteger();
+
+    private FingerprintStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the store from a file, starting empty if it does not exist or cannot be read.
+     *
+     * @param file The file holding the store.
+     * @return The loaded store.
+     */
+    public static FingerprintStore load(Path file) {
+        FingerprintStore store = new FingerprintStore(file);
+        if (!Files.exists(file)) {
+            return store;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line == null || !line.equals("# version=" + FORMAT_VERSION)) {
+                System.out.println("Ignoring fingerprint file " + file + " written with another format version");
+                return store;
+            }
+            String url = null;
+            String[] header = null;
+            List<HourlyWeatherInfo> rows = new ArrayList<>();
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields[0].equals("P") && fields.length == 7) {
+                    store.putLoaded(url, header, rows);
+                    url = fields[1];
+                    header = fields;
+                    rows = new ArrayList<>();
+                } else if (fields[0].equals("R") && fields.length == 16 && url != null) {
+                    rows.add(fromFields(Arrays.copyOfRange(fields, 1, fields.length)));
+                }
+            }
+            store.putLoaded(url, header, rows);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Unable to read fingerprint file " + file + ": " + e.getMessage());
+            store.entries.clear();
+        }
+        return store;
+    }
+
+    private void putLoaded(String url, String[] header, List<HourlyWeatherInfo> rows) {
+        if (url != null) {
+            entries.put(url, new Entry(LocalDate.parse(header[2]), header[3], emptyToNull(header[4]), emptyToNull(header[5]),
+                    header[6].equals("hourly"), rows));
+        }
+    }
+
+    /**
+     * Returns what was last recorded for a page, if it was recorded today.
+     *
+     * @param url The URL of the hourly page.
+     * @return The entry, or null if the page was not recorded today.
+     */
+    public Entry get(String url) {
+        Entry entry = entries.get(url);
+        return entry != null && !isExpired(entry) ? entry : null;
+    }
+
+    private boolean isExpired(Entry entry) {
+        return !entry.recordedOn.equals(LocalDate.now());
+    }
+
+    /**
+     * Records the current version of a page.
+     *
+     * @param url                      The URL of the hourly page.
+     * @param fingerprint              The hash of the page's forecast section.
+     * @param etag                     The ETag header of the response, or null.
+     * @param lastModified             The Last-Modified header of the response, or null.
+     * @param airQualityFromHourlyPage Whether the air quality of the rows was read from the hourly page itself.
+     * @param rows                     The rows extracted from the page.
+     */
+    public void put(String url, String fingerprint, String etag, String lastModified, boolean airQualityFromHourlyPage, List<HourlyWeatherInfo> rows) {
+        entries.put(url, new Entry(LocalDate.now(), fingerprint, etag, lastModified, airQualityFromHourlyPage, new ArrayList<>(rows)));
+    }
+
+    /**
+     * Counts a page whose stored rows were reused.
+     */
+    public void recordUnchanged() {
+        unchangedPages.incrementAndGet();
+    }
+
+    /**
+     * Counts a page that had to be extracted.
+     */
+    public void recordChanged() {
+        changedPages.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "Unchanged pages: " + unchangedPages.get() + "/" + (unchangedPages.get() + changedPages.get());
+    }
+
+    /**
+     * Writes the store to its file through a temporary file, so readers never see a partially written store.
+     * Entries recorded on an earlier day are dropped.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void save() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+            writer.write("# version=" + FORMAT_VERSION + "\n");
+            for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                if (isExpired(entry)) {
+                    continue;
+                }
+                writer.write("P\t" + clean(mapEntry.getKey()) + "\t" + entry.recordedOn + "\t" + entry.fingerprint + "\t"
+                        + clean(entry.etag) + "\t" + clean(entry.lastModified) + "\t" + (entry.airQualityFromHourlyPage ? "hourly" : "main") + "\n");
+                for (HourlyWeatherInfo row : entry.rows) {
+                    writer.write("R");
+                    for (String field : toFields(row)) {
+                        writer.write("\t" + clean(field));
+                    }
+                    writer.write("\n");
+                }
+            }
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Hashes the content of a forecast section.
+     *
+     * @param content The text of the section.
+     * @return The SHA-256 hash as a hexadecimal string.
+     */
+    public static String fingerprintOf(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String[] toFields(HourlyWeatherInfo row) {
+        return new String[]{row.getProvince(), row.getDistrict(), row.getDate(), row.getTime(), row.getTemperatureMin(),
+                row.getTemperatureMax(), row.getDescription(), row.getHumidity(), row.getWindSpeed(), row.getUvIndex(),
+                row.getVisibility(), row.getPressure(), row.getStopPoint(), row.getAirQuality(), row.getUrl()};
+    }
+
+    private static HourlyWeatherInfo fromFields(String[] fields) {
+        HourlyWeatherInfo row = new HourlyWeatherInfo();
+        row.setProvince(fields[0]);
+        row.setDistrict(fields[1]);
+        row.setDate(fields[2]);
+        row.setTime(fields[3]);
+        row.setTemperatureMin(fields[4]);
+        row.setTemperatureMax(fields[5]);
+        row.setDescription(fields[6]);
+        row.setHumidity(fields[7]);
+        row.setWindSpeed(fields[8]);
+        row.setUvIndex(fields[9]);
+        row.setVisibility(fields[10]);
+        row.setPressure(fields[11]);
+        row.setStopPoint(fields[12]);
+        row.setAirQuality(fields[13]);
+        row.setUrl(fields[14]);
+        return row;
+    }
+
+    private static String clean(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,313 @@
+package ScrapDataToCsvStorage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import DBConnectControlDB.AppConfig;
+
+/**
+ * Local HTTP server replaying pages recorded from the weather website, so that the scraper can be benchmarked offline.
+ * A page is stored under the fixture directory as its URL path plus ".html", the home page as "index.html": for example
+ * https://thoitiet.vn/ho-chi-minh/theo-gio is served from "ho-chi-minh/theo-gio.html". Links to the recorded site are
+ * rewritten to the server's own address, so a scraper pointed at the server with 'scraper.baseUrl' never leaves it.
+ * <p>
+ * Every response is delayed by 'fixture.latencyMillis' plus up to 'fixture.jitterMillis'; a share 'fixture.slowRate' of
+ * them takes 'fixture.slowLatencyMillis' instead, and a share 'fixture.errorRate' is answered with 503. These draws come
+ * from a generator seeded with 'fixture.seed', the path and the number of times the path was requested, so a run sees the
+ * same latencies and errors whatever the order in which its threads reach the server.
+ * <p>
+ * Usage: {@code FixtureServer record <directory> [region]} saves the pages of a region (all regions if omitted) from the
+ * live site; {@code FixtureServer serve <directory> [port]} serves them until the process is stopped.
+ */
+public class FixtureServer {
+
+    /**
+     * The origin of the recorded pages, rewritten to the server's address when a page is served.
+     */
+    public static final String RECORDED_ORIGIN = "https://thoitiet.vn";
+
+    private final Path directory;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double slowRate;
+    private final long slowLatencyMillis;
+    private final double errorRate;
+    private final long seed;
+
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> pages = new ConcurrentHashMap<>();
+    private final Map<String, String> etags = new ConcurrentHashMap<>();
+    private final AtomicLong servedPages = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong missingPages = new AtomicLong();
+    private final Queue<Long> requestTimes = new ConcurrentLinkedQueue<>();
+    private HttpServer server;
+    private ExecutorService handlers;
+    private String origin;
+
+    /**
+     * Constructs a new FixtureServer.
+     *
+     * @param directory         The directory holding the recorded pages.
+     * @param latencyMillis     The base delay of every response.
+     * @param jitterMillis      The maximum random delay added to the base delay.
+     * @param slowRate          The share of responses, between 0 and 1, that take slowLatencyMillis instead.
+     * @param slowLatencyMillis The delay of a slow response.
+     * @param errorRate         The share of requests, between 0 and 1, answered with 503 Service Unavailable.
+     * @param seed              The seed of the latency and error draws.
+     */
+    public FixtureServer(Path directory, long latencyMillis, long jitterMillis, double slowRate, long slowLatencyMillis, double errorRate, long seed) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.latencyMillis = Math.max(0, latencyMillis);
+        this.jitterMillis = Math.max(0, jitterMillis);
+        this.slowRate = slowRate;
+        this.slowLatencyMillis = Math.max(0, slowLatencyMillis);
+        this.errorRate = errorRate;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates a server for a directory with the 'fixture.*' settings.
+     *
+     * @param directory The directory holding the recorded pages.
+     * @return The configured FixtureServer, not yet started.
+     */
+    public static FixtureServer fromConfig(Path directory) {
+        return new FixtureServer(directory,
+                AppConfig.getLong("fixture.latencyMillis", 50),
+                AppConfig.getLong("fixture.jitterMillis", 50),
+                AppConfig.getDouble("fixture.slowRate", 0.02),
+                AppConfig.getLong("fixture.slowLatencyMillis", 2000),
+                AppConfig.getDouble("fixture.errorRate", 0.01),
+                AppConfig.getLong("fixture.seed", 42));
+    }
+
+    /**
+     * Starts serving on the loopback interface.
+     *
+     * @param port The port to listen on, or 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        // Delayed responses sleep on their handler thread, so the pool must grow with the number of requests in flight
+        handlers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fixture-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(handlers);
+        server.createContext("/", this::handle);
+        server.start();
+        origin = "http://127.0.0.1:" + server.getAddress().getPort();
+        System.out.println("Fixture server serving " + directory + " at " + origin);
+    }
+
+    /**
+     * Stops the server.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            handlers.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * Returns the address to use as 'scraper.baseUrl'.
+     *
+     * @return The origin of the running server, e.g. "http://127.0.0.1:8080".
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    public long getServedPages() {
+        return servedPages.get();
+    }
+
+    public long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    public long getMissingPages() {
+        return missingPages.get();
+    }
+
+    /**
+     * Returns the times at which the requests arrived, including those answered with an error.
+     *
+     * @return The arrival times in {@link System#nanoTime()} units, in arrival order.
+     */
+    public List<Long> getRequestTimes() {
+        List<Long> times = new ArrayList<>(requestTimes);
+        Collections.sort(times);
+        return times;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestTimes.add(System.nanoTime());
+        try {
+            String path = exchange.getRequestURI().getPath();
+            int occurrence = requestCounts.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+            // SplittableRandom scrambles its seed, so consecutive requests of a path get unrelated draws
+            SplittableRandom random = new SplittableRandom((seed * 31 + path.hashCode()) * 31 + occurrence);
+
+            long delay = random.nextDouble() < slowRate ? slowLatencyMillis
+                    : latencyMillis + (jitterMillis == 0 ? 0 : (long) (random.nextDouble() * (jitterMillis + 1)));
+            Thread.sleep(delay);
+
+            if (random.nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            byte[] page = pageOf(path);
+            if (page == null) {
+                missingPages.incrementAndGet();
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            String etag = etags.get(path);
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            servedPages.incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, page.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(page);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Reads a recorded page, with links to the recorded site pointing at this server. Pages are read once and kept in memory.
+     *
+     * @param path The path of the request.
+     * @return The page, or null if it was not recorded.
+     * @throws IOException If the page cannot be read.
+     */
+    private byte[] pageOf(String path) throws IOException {
+        byte[] page = pages.get(path);
+        if (page != null) {
+            return page;
+        }
+        Path file = fileOf(directory, path);
+        if (!file.startsWith(directory) || !Files.isRegularFile(file)) {
+            return null;
+        }
+        String html = Files.readString(file, StandardCharsets.UTF_8).replace(RECORDED_ORIGIN, origin);
+        page = html.getBytes(StandardCharsets.UTF_8);
+        etags.put(path, "\"" + FingerprintStore.fingerprintOf(html).substring(0, 16) + "\"");
+        pages.put(path, page);
+        return page;
+    }
+
+    /**
+     * Returns the file a page is recorded in.
+     *
+     * @param directory The fixture directory.
+     * @param path      The path of the page's URL.
+     * @return The file of the page.
+     */
+    public static Path fileOf(Path directory, String path) {
+        String relative = path.replaceAll("^/+|/+$", "");
+        return directory.resolve(relative.isEmpty() ? "index.html" : relative + ".html").normalize();
+    }
+
+    /**
+     * Saves the home page and the main and hourly pages of every location of a region from the live site.
+     * The requests go through the rate limiter of the site, like those of a scraping run.
+     *
+     * @param directory  The fixture directory to fill.
+     * @param regionName The name of the region, or {@link WeatherScrapingHourlyToStorage#All} for all regions.
+     * @throws IOException          If a page cannot be saved.
+     * @throws InterruptedException If the thread is interrupted while waiting for a page.
+     */
+    public static void record(Path directory, String regionName) throws IOException, InterruptedException {
+        HttpScrapeEngine engine = new HttpScrapeEngine(Duration.ofSeconds(30));
+        List<String> urls = new ArrayList<>();
+        urls.add(RECORDED_ORIGIN + "/");
+        for (ProvinceInfo province : engine.getAllProvinces(regionName)) {
+            urls.add(province.getUrl());
+            urls.add(province.getUrlHour());
+            for (DistrictInfo district : engine.getDistrictsOfProvince(province.getUrl())) {
+                LocationTask location = LocationTask.of(province, district);
+                urls.add(location.getUrl());
+                urls.add(location.getHourlyUrl());
+            }
+        }
+
+        HttpClient httpClient = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
+        int saved = 0;
+        for (String url : urls) {
+            RateLimiter.forUrl(url).acquire();
+            HttpResponse<byte[]> response = httpClient.send(HttpRequest.newBuilder(URI.create(url)).timeout(Duration.ofSeconds(30)).GET().build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) {
+                System.err.println("Skipping " + url + ": HTTP " + response.statusCode());
+                continue;
+            }
+            Path file = fileOf(directory, URI.create(url).getPath());
+            Files.createDirectories(file.getParent());
+            Files.write(file, response.body());
+            System.out.println("Recorded " + (++saved) + "/" + urls.size() + ": " + url);
+        }
+        engine.shutdown();
+    }
+
+    /**
+     * Records or serves fixture pages.
+     *
+     * @param args "record" or "serve", the fixture directory, then the region to record or the port to serve on.
+     * @throws Exception If recording or starting the server fails.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || !(args[0].equals("record") || args[0].equals("serve"))) {
+            System.err.println("Usage: FixtureServer record <directory> [region] | FixtureServer serve <directory> [port]");
+            return;
+        }
+        Path directory = Paths.get(args[1]).toAbsolutePath().normalize();
+        if (args[0].equals("record")) {
+            record(directory, args.length > 2 ? args[2] : WeatherScrapingHourlyToStorage.All);
+            return;
+        }
+        FixtureServer server = fromConfig(directory);
+        server.start(args.length > 2 ? Integer.parseInt(args[2]) : 8080);
+        Thread.currentThread().join();
+    }
+}
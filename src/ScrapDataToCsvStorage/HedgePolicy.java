@@ -0,0 +1,116 @@
+package ScrapDataToCsvStorage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import DBConnectControlDB.AppConfig;
+
+/**
+ * Decides when a slow page request is duplicated by a second, hedged request.
+ * A request that has not answered after the 'scraper.hedge.percentile' of the page load times seen so far gets a hedge,
+ * and the first of the two responses wins. Hedges are budgeted: at most 'scraper.hedge.budgetPercent' percent of the
+ * requests get one, so hedging cuts the slow tail without adding more than that share of load on the site.
+ * The delay is derived from the latencies of primary requests only, recorded with {@link #recordPrimaryLatency}: the
+ * shortened page loads of hedged requests would lower the percentile and make hedging more frequent over time.
+ * No hedge is sent until 'scraper.hedge.minSamples' primary requests have been measured.
+ */
+public class HedgePolicy {
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayMillis;
+    private final double budgetRatio;
+    private final long minSamples;
+    private final LatencyHistogram latencies;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * Constructs a new HedgePolicy.
+     *
+     * @param enabled        Whether requests are hedged at all.
+     * @param percentile     The percentile of the page load times after which a hedge is sent.
+     * @param minDelayMillis The lower bound of the hedge delay.
+     * @param budgetPercent  The maximum share of requests, in percent, that get a hedge.
+     * @param minSamples     The number of measured primary requests needed before hedging starts.
+     * @param latencies      The histogram the primary request latencies are recorded in and the delay is derived from.
+     */
+    public HedgePolicy(boolean enabled, double percentile, long minDelayMillis, double budgetPercent, long minSamples, LatencyHistogram latencies) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayMillis = Math.max(1, minDelayMillis);
+        this.budgetRatio = Math.max(0, budgetPercent) / 100;
+        this.minSamples = Math.max(1, minSamples);
+        this.latencies = latencies;
+    }
+
+    /**
+     * Creates the policy configured with the 'scraper.hedge.*' settings, with a histogram of its own.
+     *
+     * @return The configured HedgePolicy.
+     */
+    public static HedgePolicy fromConfig() {
+        return new HedgePolicy(AppConfig.getBoolean("scraper.hedge.enabled", false),
+                AppConfig.getDouble("scraper.hedge.percentile", 95),
+                AppConfig.getLong("scraper.hedge.minDelayMillis", 200),
+                AppConfig.getDouble("scraper.hedge.budgetPercent", 5),
+                AppConfig.getLong("scraper.hedge.minSamples", 20),
+                new LatencyHistogram());
+    }
+
+    /**
+     * Counts a request and returns how long to wait for it before hedging.
+     *
+     * @return The hedge delay in milliseconds, or -1 if the request must not be hedged.
+     */
+    public long startRequest() {
+        requests.incrementAndGet();
+        if (!enabled || latencies.getCount() < minSamples) {
+            return -1;
+        }
+        return Math.max(minDelayMillis, (long) Math.ceil(latencies.percentileMillis(percentile)));
+    }
+
+    /**
+     * Records how long a primary request took to answer. If its hedge answered first, the time until then is recorded,
+     * which the primary request took at least.
+     *
+     * @param startNanos The time the primary request was sent, as returned by System.nanoTime().
+     */
+    public void recordPrimaryLatency(long startNanos) {
+        latencies.recordSince(startNanos);
+    }
+
+    /**
+     * Takes a hedge from the budget.
+     *
+     * @return true if a hedge may be sent, false if the budget is used up.
+     */
+    public boolean tryHedge() {
+        while (true) {
+            long sent = hedges.get();
+            if (sent + 1 > requests.get() * budgetRatio) {
+                return false;
+            }
+            if (hedges.compareAndSet(sent, sent + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Counts a hedge that answered before the request it duplicated.
+     */
+    public void recordHedgeWin() {
+        hedgeWins.incrementAndGet();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public String toString() {
+        return "Hedged requests: " + hedges.get() + "/" + requests.get() + ", " + hedgeWins.get() + " answered first";
+    }
+}
@@ -0,0 +1,115 @@
+package ScrapDataToCsvStorage;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import DBConnectControlDB.AppConfig;
+
+/**
+ * The IP address identifying the machine running the scraper, written into every CSV row and into the control database.
+ * The address is resolved once per process. If 'scraper.hostIp' is set it is used as is; otherwise the public address
+ * is looked up from 'scraper.hostIp.lookupUrl' in the background as soon as {@link #resolveAsync()} is called.
+ * {@link #get()} waits at most 'scraper.hostIp.timeoutSeconds' for the lookup and falls back to the address of
+ * a local network interface, so a slow lookup service never holds up a run.
+ */
+public class HostIdentity {
+
+    private static final String UNKNOWN_ADDRESS = "Không thể lấy địa chỉ IP";
+
+    private static final String OVERRIDE = AppConfig.getString("scraper.hostIp", "");
+    private static final String LOOKUP_URL = AppConfig.getString("scraper.hostIp.lookupUrl", "https://checkip.amazonaws.com");
+    private static final Duration TIMEOUT = Duration.ofSeconds(AppConfig.getLong("scraper.hostIp.timeoutSeconds", 5));
+
+    private static CompletableFuture<String> lookup;
+    private static String resolved;
+
+    private HostIdentity() {
+    }
+
+    /**
+     * Starts resolving the address in the background. Later calls do nothing.
+     */
+    public static synchronized void resolveAsync() {
+        if (lookup != null) {
+            return;
+        }
+        if (!OVERRIDE.isEmpty()) {
+            lookup = CompletableFuture.completedFuture(OVERRIDE);
+            return;
+        }
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(LOOKUP_URL)).timeout(TIMEOUT).GET().build();
+        lookup = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200 || response.body().isBlank()) {
+                        throw new IllegalStateException("HTTP " + response.statusCode() + " from " + LOOKUP_URL);
+                    }
+                    return response.body().trim();
+                });
+    }
+
+    /**
+     * Returns the address of this machine, starting the lookup if it has not been started yet.
+     *
+     * @return The public IP address, the address of a local interface if the lookup failed or timed out,
+     * or an error text if neither is available.
+     */
+    public static synchronized String get() {
+        if (resolved != null) {
+            return resolved;
+        }
+        resolveAsync();
+        try {
+            resolved = lookup.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("Public IP lookup timed out after " + TIMEOUT.toSeconds() + " s, using a local address");
+            resolved = localAddress();
+        } catch (ExecutionException e) {
+            System.err.println("Public IP lookup failed (" + e.getCause().getMessage() + "), using a local address");
+            resolved = localAddress();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return localAddress();
+        }
+        return resolved;
+    }
+
+    /**
+     * Finds the IPv4 address of the first active, non-loopback network interface.
+     *
+     * @return The local address, or an error text if there is none.
+     */
+    private static String localAddress() {
+        try {
+            for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (!networkInterface.isUp() || networkInterface.isLoopback() || networkInterface.isVirtual()) {
+                    continue;
+                }
+                for (InetAddress address : Collections.list(networkInterface.getInetAddresses())) {
+                    if (address instanceof Inet4Address && !address.isLinkLocalAddress()) {
+                        return address.getHostAddress();
+                    }
+                }
+            }
+            return InetAddress.getLocalHost().getHostAddress();
+        } catch (SocketException e) {
+            e.printStackTrace();
+        } catch (IOException e) {
+            System.err.println("Unable to determine a local address: " + e.getMessage());
+        }
+        return UNKNOWN_ADDRESS;
+    }
+}
@@ -0,0 +1,480 @@
+package ScrapDataToCsvStorage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+/**
+ * Scrape engine that downloads pages with {@link HttpClient} and reads them with jsoup.
+ * The selectors used by the scraper all target server-rendered markup, so no browser is needed:
+ * a page costs one HTTP request and a few kilobytes of memory instead of a Chrome process.
+ */
+public class HttpScrapeEngine implements ScrapeEngine {
+
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36";
+
+    private static final RetryPolicy RETRY_POLICY = RetryPolicy.fromConfig();
+
+    private static final String DEW_POINT_SELECTOR = ".weather-detail .d-flex:has(.avatar-img svg[name='dewpoint']) .ml-auto > h3";
+
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final HedgePolicy hedgePolicy = HedgePolicy.fromConfig();
+
+    /**
+     * Constructs a new HttpScrapeEngine.
+     *
+     * @param requestTimeout The maximum time to wait for a page to be downloaded.
+     */
+    public HttpScrapeEngine(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(requestTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Downloads and parses a page, retrying up to a specified number of times with the backoff of the retry policy.
+     *
+     * @param url        The URL to be loaded.
+     * @param maxRetries The maximum number of attempts.
+     * @return The parsed page.
+     * @throws IllegalStateException If the page could not be loaded after all attempts.
+     */
+    private Document getWithRetry(String url, int maxRetries) {
+        return Jsoup.parse(sendWithRetry(url, maxRetries, null).body(), url);
+    }
+
+    /**
+     * Downloads a page, retrying up to a specified number of times with the backoff of the retry policy.
+     * Every attempt waits while the host's circuit breaker is open, takes a token from the host's rate limiter
+     * and reports its outcome to the breaker. A slow attempt may be hedged, see {@link HedgePolicy}; the hedge takes a
+     * token of its own before it is sent.
+     *
+     * @param url        The URL to be loaded.
+     * @param maxRetries The maximum number of attempts.
+     * @param cached     The fingerprint recorded for the page, whose validators make the request conditional, or null.
+     * @return The response, either 200 OK or 304 Not Modified if a cached fingerprint was given.
+     * @throws IllegalStateException If the page could not be loaded after all attempts.
+     */
+    private HttpResponse<String> sendWithRetry(String url, int maxRetries, FingerprintStore.Entry cached) {
+        CircuitBreaker breaker = CircuitBreaker.forUrl(url);
+        RateLimiter rateLimiter = RateLimiter.forUrl(url);
+        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            try {
+                breaker.awaitPermission();
+                rateLimiter.acquire();
+                HttpResponse<String> response = send(url, cached);
+                breaker.recordSuccess();
+                return response;
+            } catch (IOException e) {
+                breaker.recordFailure();
+                System.err.println("Error accessing URL: " + url + ". Retry attempt " + attempt + " (" + e.getMessage() + ")");
+                if (attempt < maxRetries && !RETRY_POLICY.backoff(attempt)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        throw new IllegalStateException("Unable to load URL: " + url);
+    }
+
+    /**
+     * Downloads a single page.
+     *
+     * @param url    The URL to be loaded.
+     * @param cached The fingerprint recorded for the page, whose validators make the request conditional, or null.
+     * @return The response.
+     * @throws IOException          If the request fails or the server answers with anything but 200 OK or an expected 304.
+     * @throws InterruptedException If the thread is interrupted while waiting for the response.
+     */
+    private HttpResponse<String> send(String url, FingerprintStore.Entry cached) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .header("User-Agent", USER_AGENT)
+                .header("Accept", "text/html")
+                .GET();
+        if (cached != null && cached.getEtag() != null) {
+            builder.header("If-None-Match", cached.getEtag());
+        }
+        if (cached != null && cached.getLastModified() != null) {
+            builder.header("If-Modified-Since", cached.getLastModified());
+        }
+        long startNanos = System.nanoTime();
+        HttpResponse<String> response = hedgePolicy.isEnabled() ? sendHedged(builder.build())
+                : httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+        LatencyHistogram.pageLoads().recordSince(startNanos);
+        if (response.statusCode() != 200 && !(response.statusCode() == 304 && cached != null)) {
+            throw new IOException("HTTP " + response.statusCode());
+        }
+        return response;
+    }
+
+    /**
+     * Sends a request and, if it has not answered after the delay of the hedge policy, an identical second request.
+     * The first usable response (200 or 304) wins and the other request is cancelled. The hedge waits for a token of the
+     * host's rate limiter like any other request; if the first request answers meanwhile, the hedge is not sent.
+     *
+     * @param request The request to send.
+     * @return The winning response, or the last one to arrive if neither is usable.
+     * @throws IOException          If both requests fail.
+     * @throws InterruptedException If the thread is interrupted while waiting for a response.
+     */
+    private HttpResponse<String> sendHedged(HttpRequest request) throws IOException, InterruptedException {
+        long hedgeDelay = hedgePolicy.startRequest();
+        long startNanos = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> primary = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        CompletableFuture<HttpResponse<String>> hedge = null;
+        try {
+            if (hedgeDelay >= 0) {
+                try {
+                    HttpResponse<String> response = primary.get(hedgeDelay, TimeUnit.MILLISECONDS);
+                    hedgePolicy.recordPrimaryLatency(startNanos);
+                    return response;
+                } catch (TimeoutException e) {
+                    if (hedgePolicy.tryHedge()) {
+                        RateLimiter.forUrl(request.uri().toString()).acquire();
+                        if (!primary.isDone()) {
+                            hedge = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+                        }
+                    }
+                }
+            }
+            if (hedge == null) {
+                HttpResponse<String> response = primary.get();
+                hedgePolicy.recordPrimaryLatency(startNanos);
+                return response;
+            }
+            HttpResponse<String> response = firstUsable(primary, hedge).get();
+            hedgePolicy.recordPrimaryLatency(startNanos);
+            if (hedge.getNow(null) == response) {
+                hedgePolicy.recordHedgeWin();
+            }
+            return response;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Combines two requests for the same page into the first usable response.
+     *
+     * @param first  One request.
+     * @param second The other request.
+     * @return A future completing with the first 200 or 304 response, or with the outcome of the last request if neither is usable.
+     */
+    private static CompletableFuture<HttpResponse<String>> firstUsable(CompletableFuture<HttpResponse<String>> first, CompletableFuture<HttpResponse<String>> second) {
+        CompletableFuture<HttpResponse<String>> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+        BiConsumer<HttpResponse<String>, Throwable> onCompletion = (response, failure) -> {
+            if (failure == null && (response.statusCode() == 200 || response.statusCode() == 304)) {
+                winner.complete(response);
+            } else if (pending.decrementAndGet() == 0) {
+                if (failure == null) {
+                    winner.complete(response);
+                } else {
+                    winner.completeExceptionally(failure);
+                }
+            }
+        };
+        first.whenComplete(onCompletion);
+        second.whenComplete(onCompletion);
+        return winner;
+    }
+
+    @Override
+    public List<ProvinceInfo> getAllProvinces(String regionName) {
+        List<ProvinceInfo> provinces = new ArrayList<>();
+        String baseUrl = WeatherScrapingHourlyToStorage.BASE_URL;
+        Document page = getWithRetry(baseUrl, 3);
+
+        List<Element> provinceElements;
+        if (regionName == null || regionName.isEmpty()) {
+            // If regionName is null or empty, get all provinces
+            provinceElements = page.select(".dropdown-menu .mega-submenu a");
+        } else {
+            // Find the div that contains the given region name
+            Element regionDiv = findRegionDiv(page, regionName);
+            if (regionDiv == null) {
+                throw new IllegalStateException("Region not found: " + regionName);
+            }
+            // Find all province elements within this div
+            provinceElements = regionDiv.select("ul.mega-submenu a");
+        }
+
+        for (Element provinceElement : provinceElements) {
+            String provinceName = provinceElement.attr("title");
+            // Resolved against the page URL, as WebElement.getAttribute("href") does in a browser
+            String provinceUrl = provinceElement.absUrl("href");
+            provinces.add(new ProvinceInfo(provinceName, provinceUrl));
+        }
+        return provinces;
+    }
+
+    /**
+     * Finds the mega-menu column headed by the given region name,
+     * the equivalent of {@code //h6[text()='region']/ancestor::div[contains(@class, 'col-megamenu')]}.
+     */
+    private static Element findRegionDiv(Document page, String regionName) {
+        for (Element heading : page.select("h6")) {
+            if (!heading.text().equals(regionName)) {
+                continue;
+            }
+            for (Element ancestor : heading.parents()) {
+                if (ancestor.normalName().equals("div") && ancestor.className().contains("col-megamenu")) {
+                    return ancestor;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<DistrictInfo> getDistrictsOfProvince(String provinceUrl) {
+        List<DistrictInfo> districts = new ArrayList<>();
+        // A page that cannot be loaded is reported rather than listed as a province without districts
+        Document page = getWithRetry(provinceUrl, 3);
+
+        for (Element districtElement : page.select(".khu-vuc-lan-can a")) {
+            String districtName = districtElement.text();
+            String districtUrl = districtElement.absUrl("href");
+            districts.add(new DistrictInfo(districtName, districtUrl));
+        }
+        return districts;
+    }
+
+    @Override
+    public String getAirQuality(String url, int maxRetries) {
+        try {
+            String airQuality = findAirQuality(getWithRetry(url, maxRetries));
+            if (airQuality != null) {
+                return airQuality;
+            }
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+        }
+        System.err.println("Air quality information not found.");
+        return "Không rõ";
+    }
+
+    /**
+     * Reads the air quality from a parsed page.
+     *
+     * @param page The parsed page.
+     * @return The air quality, or null if the page does not show it.
+     */
+    static String findAirQuality(Element page) {
+        Element airQualityElement = page.selectFirst(".air-rules .air-active");
+        return airQualityElement != null ? airQualityElement.text() : null;
+    }
+
+    @Override
+    public List<HourlyWeatherInfo> scrapeLocation(String url, String hourlyUrl, String province, String district, FingerprintStore fingerprints) {
+        FingerprintStore.Entry cached = fingerprints != null ? fingerprints.get(hourlyUrl) : null;
+        HttpResponse<String> response = sendWithRetry(hourlyUrl, 1, cached);
+        if (response.statusCode() == 304) {
+            fingerprints.recordUnchanged();
+            return reuseRows(cached, url, hourlyUrl);
+        }
+
+        Document page = Jsoup.parse(response.body(), hourlyUrl);
+        String fingerprint = null;
+        if (fingerprints != null) {
+            fingerprint = FingerprintStore.fingerprintOf(forecastSectionOf(page));
+            if (cached != null && cached.getFingerprint().equals(fingerprint)) {
+                fingerprints.recordUnchanged();
+                return reuseRows(cached, url, hourlyUrl);
+            }
+        }
+
+        String airQuality = findAirQuality(page);
+        boolean airQualityFromHourlyPage = airQuality != null;
+        if (airQuality == null) {
+            // The hourly page does not carry the air quality, read it from the location's main page
+            AirQualitySources.shared().recordMainPageFallback(hourlyUrl);
+            airQuality = getAirQuality(url, 3);
+        } else {
+            AirQualitySources.shared().recordHourlyPage();
+        }
+        List<HourlyWeatherInfo> hourlyData = parseHourlyWeatherData3Days(page, hourlyUrl, province, district, airQuality);
+        if (fingerprints != null) {
+            fingerprints.recordChanged();
+            fingerprints.put(hourlyUrl, fingerprint, response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null), airQualityFromHourlyPage, hourlyData);
+        }
+        return hourlyData;
+    }
+
+    /**
+     * Returns the rows recorded for an unchanged hourly page. If their air quality came from the main page, which the
+     * fingerprint does not cover, it is read from the main page again.
+     */
+    private List<HourlyWeatherInfo> reuseRows(FingerprintStore.Entry cached, String url, String hourlyUrl) {
+        List<HourlyWeatherInfo> rows = cached.copyRows();
+        if (cached.isAirQualityFromHourlyPage()) {
+            AirQualitySources.shared().recordHourlyPage();
+            return rows;
+        }
+        AirQualitySources.shared().recordMainPageFallback(hourlyUrl);
+        String airQuality = getAirQuality(url, 3);
+        for (HourlyWeatherInfo info : rows) {
+            info.setAirQuality(airQuality);
+        }
+        return rows;
+    }
+
+    /**
+     * Collects the parts of an hourly page that the extracted rows depend on: the forecast blocks, the dew point and the
+     * air quality. Advertisements and other parts that change on every request are left out, so the fingerprint only
+     * changes when the forecast does.
+     *
+     * @param page The parsed hourly page.
+     * @return The text to fingerprint.
+     */
+    private static String forecastSectionOf(Document page) {
+        StringBuilder section = new StringBuilder();
+        for (Element detail : page.select("details.weather-day")) {
+            section.append(detail.text()).append('\n');
+        }
+        Element dewPointElement = page.selectFirst(DEW_POINT_SELECTOR);
+        section.append(dewPointElement != null ? dewPointElement.text() : "").append('\n');
+        String airQuality = findAirQuality(page);
+        section.append(airQuality != null ? airQuality : "");
+        return section.toString();
+    }
+
+    /**
+     * Gets the text of the first element matching a selector, returns a default value if not found.
+     *
+     * @param detail       Element to search within
+     * @param cssSelector  CSS selector of the desired element
+     * @param defaultValue Default value to return if element is not found
+     * @return String value of the element or default value
+     */
+    private static String safelyGetText(Element detail, String cssSelector, String defaultValue) {
+        Element element = detail.selectFirst(cssSelector);
+        return element != null ? element.text() : defaultValue;
+    }
+
+    /**
+     * Gets the text of the element following a heading, the equivalent of
+     * {@code .//h6[contains(text(), 'label')]/following-sibling::div/childTag}.
+     *
+     * @param detail       Element to search within
+     * @param label        Text contained in the h6 heading
+     * @param childTag     Tag name of the element holding the value inside the following div
+     * @param defaultValue Default value to return if element is not found
+     * @return String value of the element or default value
+     */
+    private static String safelyGetTextAfterHeading(Element detail, String label, String childTag, String defaultValue) {
+        for (Element heading : detail.select("h6")) {
+            if (!heading.text().contains(label)) {
+                continue;
+            }
+            for (Element sibling : heading.nextElementSiblings()) {
+                if (!sibling.normalName().equals("div")) {
+                    continue;
+                }
+                for (Element child : sibling.children()) {
+                    if (child.normalName().equals(childTag)) {
+                        return child.text();
+                    }
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    @Override
+    public List<HourlyWeatherInfo> scrapeHourlyWeatherData3Days(String url, String province, String district, String airQuality) {
+        Document page = getWithRetry(url, 1);
+        return parseHourlyWeatherData3Days(page, url, province, district, airQuality);
+    }
+
+    /**
+     * Extracts the hourly weather data for the next 3 days from a parsed hourly page.
+     *
+     * @param page       The parsed page.
+     * @param url        The URL of the weather data page.
+     * @param province   The name of the province for which the data is being scraped.
+     * @param district   The name of the district for which the data is being scraped.
+     * @param airQuality The air quality information.
+     * @return A list of HourlyWeatherInfo objects containing the scraped weather data.
+     * @throws IllegalStateException If the page does not contain the dew point, which means it is not an hourly page.
+     */
+    static List<HourlyWeatherInfo> parseHourlyWeatherData3Days(Document page, String url, String province, String district, String airQuality) {
+        List<HourlyWeatherInfo> hourlyData = new ArrayList<>();
+        List<Element> weatherDetails = page.select("details.weather-day");
+
+        Element dewPointElement = page.selectFirst(DEW_POINT_SELECTOR);
+        if (dewPointElement == null) {
+            throw new IllegalStateException("Dew point not found on " + url);
+        }
+        String dewPoint = dewPointElement.text();
+
+        LocalDate currentDate = LocalDate.now();
+
+        for (Element detail : weatherDetails) {
+            HourlyWeatherInfo info = new HourlyWeatherInfo();
+
+            // Determine if it should be a new date
+            String timeString = safelyGetText(detail, ".summary-day span", "Không rõ thời gian").trim();
+            if (timeString.contains("/")) {
+                currentDate = currentDate.plusDays(1);
+            }
+
+            String time = timeString.contains("/") ? "00:00" : timeString;
+            info.setTime(time);
+            info.setDate(currentDate.toString());
+
+            info.setTemperatureMin(safelyGetText(detail, ".summary-temperature-min", "Không rõ nhiệt độ thấp nhất"));
+            info.setTemperatureMax(safelyGetText(detail, ".summary-temperature-max-value", "Không rõ nhiệt độ cao nhất"));
+            info.setDescription(safelyGetText(detail, ".summary-description-detail", "Không rõ mô tả"));
+            info.setHumidity(safelyGetText(detail, ".summary-humidity > span:last-child", "Không có dữ liệu Độ ẩm"));
+            info.setWindSpeed(safelyGetText(detail, ".summary-speed > span:last-child", "Không có dữ liệu Tốc độ gió"));
+            info.setUvIndex(safelyGetText(detail, ".weather-content-item .op-8.fw-bold", "Không có dữ liệu UV"));
+            info.setVisibility(safelyGetTextAfterHeading(detail, "Tầm nhìn", "span", "Không có dữ liệu Tầm nhìn"));
+            info.setPressure(safelyGetTextAfterHeading(detail, "Áp suất", "h3", "Không có dữ liệu Áp suất"));
+            info.setStopPoint(dewPoint);
+            info.setUrl(url);
+            info.setProvince(province);
+            info.setDistrict(district);
+            info.setAirQuality(airQuality);
+
+            hourlyData.add(info);
+        }
+        return hourlyData;
+    }
+
+    @Override
+    public void shutdown() {
+        if (hedgePolicy.isEnabled()) {
+            System.out.println(hedgePolicy);
+        }
+        // HttpClient has no explicit close before Java 21; its connections are released when it is garbage collected
+    }
+}
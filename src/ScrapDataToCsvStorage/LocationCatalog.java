@@ -0,0 +1,187 @@
+package ScrapDataToCsvStorage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A versioned, on-disk list of the provinces and districts of a region.
+ * The list of locations almost never changes, so a run can start straight from the cached catalog instead of
+ * rediscovering every province and district page. Each region is stored in its own tab-separated file
+ * whose header records the format version and the time the locations were discovered.
+ */
+public class LocationCatalog {
+
+    /**
+     * The version of the file format. Catalogs written with another version are ignored and rediscovered.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private final String regionName;
+    private final long discoveredAt;
+    private final List<LocationTask> locations;
+
+    /**
+     * Constructs a new LocationCatalog.
+     *
+     * @param regionName   The region the locations belong to.
+     * @param discoveredAt The time the locations were discovered, in milliseconds since the epoch.
+     * @param locations    The provinces and districts of the region, in discovery order.
+     */
+    public LocationCatalog(String regionName, long discoveredAt, List<LocationTask> locations) {
+        this.regionName = regionName;
+        this.discoveredAt = discoveredAt;
+        this.locations = Collections.unmodifiableList(new ArrayList<>(locations));
+    }
+
+    public String getRegionName() {
+        return regionName;
+    }
+
+    public long getDiscoveredAt() {
+        return discoveredAt;
+    }
+
+    public List<LocationTask> getLocations() {
+        return locations;
+    }
+
+    /**
+     * Returns the number of URLs a run over this catalog visits: the main page and the hourly page of every location.
+     *
+     * @return The exact number of URLs for the region.
+     */
+    public int getUrlCount() {
+        return locations.size() * 2;
+    }
+
+    /**
+     * Checks whether the catalog is younger than the given age.
+     *
+     * @param maxAge The maximum age.
+     * @return true if the locations were discovered less than maxAge ago.
+     */
+    public boolean isYoungerThan(Duration maxAge) {
+        return System.currentTimeMillis() - discoveredAt < maxAge.toMillis();
+    }
+
+    /**
+     * Checks whether another catalog lists the same locations in the same order.
+     *
+     * @param other The catalog to compare with.
+     * @return true if both catalogs contain the same locations.
+     */
+    public boolean hasSameLocations(LocationCatalog other) {
+        if (other == null || other.locations.size() != locations.size()) {
+            return false;
+        }
+        for (int i = 0; i < locations.size(); i++) {
+            LocationTask a = locations.get(i);
+            LocationTask b = other.locations.get(i);
+            if (!a.getProvince().equals(b.getProvince()) || !a.getDistrict().equals(b.getDistrict())
+                    || !a.getUrl().equals(b.getUrl()) || !a.getHourlyUrl().equals(b.getHourlyUrl())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the file holding the catalog of a region.
+     *
+     * @param directory  The catalog directory.
+     * @param regionName The name of the region; an empty name stands for all regions.
+     * @return The path of the catalog file.
+     */
+    public static Path fileOf(Path directory, String regionName) {
+        return directory.resolve(slugOf(regionName) + ".catalog");
+    }
+
+    /**
+     * Turns a region name into an ASCII slug usable in file names, e.g. "Đông Nam Bộ" becomes "dong-nam-bo".
+     *
+     * @param regionName The name of the region; an empty name stands for all regions.
+     * @return The slug of the region.
+     */
+    public static String slugOf(String regionName) {
+        if (regionName == null || regionName.isEmpty()) {
+            return "all";
+        }
+        return Normalizer.normalize(regionName, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "").replace('đ', 'd').replace('Đ', 'D')
+                .toLowerCase().replaceAll("[^a-z0-9]+", "-").replaceAll("(^-|-$)", "");
+    }
+
+    /**
+     * Loads the catalog of a region.
+     *
+     * @param directory  The catalog directory.
+     * @param regionName The name of the region.
+     * @return The catalog, or null if it does not exist, was written with another format version or cannot be read.
+     */
+    public static LocationCatalog load(Path directory, String regionName) {
+        Path file = fileOf(directory, regionName);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            int version = -1;
+            long discoveredAt = -1;
+            List<LocationTask> locations = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("# version=")) {
+                    version = Integer.parseInt(line.substring("# version=".length()).trim());
+                } else if (line.startsWith("# discoveredAt=")) {
+                    discoveredAt = Long.parseLong(line.substring("# discoveredAt=".length()).trim());
+                } else if (!line.isEmpty() && !line.startsWith("#")) {
+                    String[] fields = line.split("\t", -1);
+                    if (fields.length != 4) {
+                        throw new IOException("Malformed catalog line: " + line);
+                    }
+                    locations.add(new LocationTask(fields[0], fields[1], fields[2], fields[3]));
+                }
+            }
+            if (version != FORMAT_VERSION || discoveredAt < 0) {
+                System.out.println("Ignoring catalog " + file + " written with format version " + version);
+                return null;
+            }
+            return new LocationCatalog(regionName, discoveredAt, locations);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Unable to read location catalog " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the catalog to its file. The file is written to a temporary file first and then moved into place,
+     * so readers never see a partially written catalog.
+     *
+     * @param directory The catalog directory.
+     * @throws IOException If the catalog cannot be written.
+     */
+    public void save(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path file = fileOf(directory, regionName);
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+            writer.write("# version=" + FORMAT_VERSION + "\n");
+            writer.write("# region=" + regionName + "\n");
+            writer.write("# discoveredAt=" + discoveredAt + "\n");
+            writer.write("# province\tdistrict\turl\thourlyUrl\n");
+            for (LocationTask location : locations) {
+                writer.write(location.getProvince() + "\t" + location.getDistrict() + "\t" + location.getUrl() + "\t" + location.getHourlyUrl() + "\n");
+            }
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
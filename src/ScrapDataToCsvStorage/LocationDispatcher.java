@@ -0,0 +1,106 @@
+package ScrapDataToCsvStorage;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds locations to the scraping workers and brings failed locations back after a delay.
+ * A worker whose location fails hands it to {@link #retryLater(LocationTask)} and moves on to the next one instead of
+ * sleeping; a scheduler thread puts the location back into the queue once the backoff of the {@link RetryPolicy} has passed.
+ * The dispatcher counts the locations that are queued, being scraped or waiting for a retry, so that the caller knows
+ * when the queue can be closed.
+ */
+public class LocationDispatcher {
+
+    private final BlockingQueue<LocationTask> locationQueue;
+    private final RetryPolicy retryPolicy;
+    private final ScheduledExecutorService retryScheduler;
+    private int outstanding;
+
+    /**
+     * Constructs a new LocationDispatcher.
+     *
+     * @param locationQueue The queue read by the scraping workers.
+     * @param retryPolicy   The policy deciding whether and when a failed location is retried.
+     */
+    public LocationDispatcher(BlockingQueue<LocationTask> locationQueue, RetryPolicy retryPolicy) {
+        this.locationQueue = locationQueue;
+        this.retryPolicy = retryPolicy;
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "location-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a newly discovered location, waiting while the queue is full.
+     *
+     * @param location The location to scrape.
+     * @throws InterruptedException If the thread is interrupted while waiting for space in the queue.
+     */
+    public void dispatch(LocationTask location) throws InterruptedException {
+        synchronized (this) {
+            outstanding++;
+        }
+        try {
+            locationQueue.put(location);
+        } catch (InterruptedException e) {
+            completed();
+            throw e;
+        }
+    }
+
+    /**
+     * Schedules another attempt of a failed location if the retry policy allows it.
+     * When true is returned the location stays outstanding; otherwise the caller must call {@link #completed()}.
+     *
+     * @param location The location that failed.
+     * @return true if the location will be queued again after the backoff delay.
+     */
+    public boolean retryLater(LocationTask location) {
+        if (!retryPolicy.hasAttemptsLeft(location.getAttempt())) {
+            return false;
+        }
+        long delay = retryPolicy.backoffMillis(location.getAttempt());
+        System.err.println("Retrying " + location + " in " + delay + " ms (attempt " + (location.getAttempt() + 1) + ")");
+        retryScheduler.schedule(() -> {
+            try {
+                locationQueue.put(location.nextAttempt());
+            } catch (InterruptedException e) {
+                completed();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Marks a location as finished, whether it succeeded or was given up.
+     */
+    public synchronized void completed() {
+        outstanding--;
+        if (outstanding == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until every dispatched location has finished, including its retries.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public synchronized void awaitIdle() throws InterruptedException {
+        while (outstanding > 0) {
+            wait();
+        }
+    }
+
+    /**
+     * Stops the retry scheduler. Retries still waiting for their delay are dropped.
+     */
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+    }
+}
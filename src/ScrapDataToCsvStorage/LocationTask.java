@@ -0,0 +1,92 @@
+package ScrapDataToCsvStorage;
+
+/**
+ * A province or district waiting to be scraped, as passed from the discovery stage to the scraping workers.
+ */
+public class LocationTask {
+    private final String province;
+    private final String district;
+    private final String url;
+    private final String hourlyUrl;
+    private final int attempt;
+
+    /**
+     * Constructs a new LocationTask.
+     *
+     * @param province  The name of the province.
+     * @param district  The name of the district, or an empty string for the province itself.
+     * @param url       The URL of the location's main page.
+     * @param hourlyUrl The URL of the location's hourly weather page.
+     */
+    public LocationTask(String province, String district, String url, String hourlyUrl) {
+        this(province, district, url, hourlyUrl, 1);
+    }
+
+    private LocationTask(String province, String district, String url, String hourlyUrl, int attempt) {
+        this.province = province;
+        this.district = district;
+        this.url = url;
+        this.hourlyUrl = hourlyUrl;
+        this.attempt = attempt;
+    }
+
+    /**
+     * Creates the task for a province's own weather pages.
+     *
+     * @param province The province to scrape.
+     * @return A new LocationTask.
+     */
+    public static LocationTask of(ProvinceInfo province) {
+        return new LocationTask(province.getName(), "", province.getUrl(), province.getUrlHour());
+    }
+
+    /**
+     * Creates the task for a district's weather pages.
+     *
+     * @param province The province the district belongs to.
+     * @param district The district to scrape.
+     * @return A new LocationTask.
+     */
+    public static LocationTask of(ProvinceInfo province, DistrictInfo district) {
+        return new LocationTask(province.getName(), district.getName(), district.getUrl(), district.getUrlHour());
+    }
+
+    public String getProvince() {
+        return province;
+    }
+
+    public String getDistrict() {
+        return district;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getHourlyUrl() {
+        return hourlyUrl;
+    }
+
+    /**
+     * Returns the number of the attempt this task represents, starting at 1.
+     *
+     * @return The attempt number.
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * Creates the task for the next attempt at the same location.
+     *
+     * @return A new LocationTask with the attempt number increased by one.
+     */
+    public LocationTask nextAttempt() {
+        return new LocationTask(province, district, url, hourlyUrl, attempt + 1);
+    }
+
+    @Override
+    public String toString() {
+        return province + (district.isEmpty() ? "" : " / " + district) + " - " + url;
+    }
+}
@@ -0,0 +1,137 @@
+package ScrapDataToCsvStorage;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import DBConnectControlDB.AppConfig;
+
+/**
+ * Checks on fixture pages that the HTTP engine never sends requests to a host faster than its {@link RateLimiter} allows.
+ * Concurrent workers load the pages of 'dataCsvAndSqlAll/fixtures/air-quality', served by a {@link FixtureServer}
+ * without injected latency or errors, with the 'scraper.rateLimit.*' settings (2 requests per second with a burst of 5
+ * by default). Every span of arrivals at the server must then hold at most the burst plus the requests earned at the
+ * configured rate over that span, and the requests after the burst must take at least as long as the rate demands.
+ * The check prints each failed expectation and exits with status 1 if any failed.
+ * <p>
+ * Usage: {@code RateLimitFixtureCheck [requests] [workers]}, by default 15 requests from 8 workers.
+ */
+public class RateLimitFixtureCheck {
+
+    /**
+     * Allowance for the time between a token being taken and the request reaching the server.
+     */
+    private static final long SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static int failures;
+
+    /**
+     * Runs the check.
+     *
+     * @param args Optionally, the number of requests and the number of concurrent workers.
+     * @throws IOException          If the fixture server cannot be started.
+     * @throws InterruptedException If the thread is interrupted while waiting for the workers.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 15;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        double requestsPerSecond = AppConfig.getDouble("scraper.rateLimit.requestsPerSecond", 2);
+        int burst = Math.max(1, AppConfig.getInt("scraper.rateLimit.burst", 5));
+        if (requestsPerSecond <= 0) {
+            System.err.println("The rate limit is disabled, set 'scraper.rateLimit.requestsPerSecond' to check it");
+            System.exit(1);
+        }
+
+        FixtureServer server = new FixtureServer(Paths.get("dataCsvAndSqlAll", "fixtures", "air-quality"), 0, 0, 0, 0, 0, 42);
+        server.start(0);
+        HttpScrapeEngine engine = new HttpScrapeEngine(Duration.ofSeconds(10));
+        ExecutorService executorService = Executors.newFixedThreadPool(workers);
+        int warmUp = 0;
+        try {
+            String[] pages = {server.getOrigin() + "/ha-noi", server.getOrigin() + "/ho-chi-minh"};
+            // Warm up the client and the server first, so that their start-up does not delay the burst, then wait for
+            // the bucket to fill up again
+            warmUp = Math.min(workers, burst);
+            loadPages(executorService, engine, pages, warmUp);
+            Thread.sleep((long) Math.ceil(burst / requestsPerSecond * 1000) + 100);
+            loadPages(executorService, engine, pages, requests);
+        } finally {
+            executorService.shutdown();
+            engine.shutdown();
+            server.stop();
+        }
+
+        List<Long> allTimes = server.getRequestTimes();
+        List<Long> times = allTimes.subList(Math.min(warmUp, allTimes.size()), allTimes.size());
+        expect("requests served", (long) requests, (long) times.size());
+        checkSpans(times, requestsPerSecond, burst);
+        if (times.size() > burst) {
+            double elapsed = (times.get(times.size() - 1) - times.get(0)) / 1e9;
+            double minimum = (times.size() - burst) / requestsPerSecond - SLACK_NANOS / 1e9;
+            System.out.printf("%d requests in %.2f s, %.2f requests per second after the burst of %d%n",
+                    times.size(), elapsed, (times.size() - burst) / elapsed, burst);
+            if (elapsed < minimum) {
+                failures++;
+                System.err.printf("FAILED duration: expected at least %.2f s but was %.2f s%n", minimum, elapsed);
+            }
+        }
+        for (RateLimiter rateLimiter : RateLimiter.all()) {
+            System.out.println(rateLimiter);
+        }
+        System.out.println(failures == 0 ? "Rate limit fixture check passed" : failures + " expectations failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Loads pages concurrently, alternating between the given ones, and waits until every load has finished.
+     */
+    private static void loadPages(ExecutorService executorService, HttpScrapeEngine engine, String[] pages, int count) throws InterruptedException {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String page = pages[i % pages.length];
+            results.add(executorService.submit(() -> engine.getAirQuality(page, 1)));
+        }
+        for (Future<String> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                failures++;
+                System.err.println("FAILED request: " + e.getCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Checks the token bucket bound on every span of arrivals: the requests from the i-th to the j-th arrival may not
+     * exceed the burst plus the tokens refilled between them.
+     */
+    private static void checkSpans(List<Long> times, double requestsPerSecond, int burst) {
+        for (int i = 0; i < times.size(); i++) {
+            for (int j = i + 1; j < times.size(); j++) {
+                long spanNanos = times.get(j) - times.get(i) + SLACK_NANOS;
+                double allowed = burst + requestsPerSecond * spanNanos / 1e9;
+                int count = j - i + 1;
+                if (count > allowed) {
+                    failures++;
+                    System.err.printf("FAILED rate: %d requests arrived within %.3f s, at most %.1f allowed%n",
+                            count, (times.get(j) - times.get(i)) / 1e9, allowed);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void expect(String what, Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            failures++;
+            System.err.println("FAILED " + what + ": expected " + expected + " but was " + actual);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ScrapDataToCsvStorage;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import DBConnectControlDB.AppConfig;
+
+/**
+ * Token bucket limiting the rate of page fetches to a host.
+ * The bucket holds up to 'scraper.rateLimit.burst' tokens and is refilled at 'scraper.rateLimit.requestsPerSecond';
+ * every fetch takes one token and waits when the bucket is empty. A waiting fetch reserves its token up front, so
+ * concurrent callers are spaced out evenly instead of all waking up at once. A rate of 0 disables the limit.
+ * The limiter keeps the total time callers spent waiting, which shows whether more concurrency can pay off.
+ */
+public class RateLimiter {
+
+    private static final Map<String, RateLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private final String host;
+    private final double burst;
+    private final long nanosPerToken;
+    private double tokens;
+    private long lastRefillNanos;
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong delayedAcquisitions = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    /**
+     * Constructs a new RateLimiter with a full bucket.
+     *
+     * @param host              The host the limiter applies to, used in reports.
+     * @param requestsPerSecond The sustained number of requests per second; 0 or less disables the limit.
+     * @param burst             The number of requests that may be made back to back after an idle period.
+     */
+    public RateLimiter(String host, double requestsPerSecond, int burst) {
+        this.host = host;
+        this.burst = Math.max(1, burst);
+        this.nanosPerToken = requestsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond) : 0;
+        this.tokens = this.burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns the shared limiter of the host of a URL, creating it from the 'scraper.rateLimit.*' settings on first use.
+     *
+     * @param url A URL on the host.
+     * @return The limiter of the host.
+     */
+    public static RateLimiter forUrl(String url) {
+        String host;
+        try {
+            host = URI.create(url).getHost();
+        } catch (IllegalArgumentException e) {
+            host = null;
+        }
+        return LIMITERS.computeIfAbsent(host != null ? host : "", h -> new RateLimiter(h,
+                AppConfig.getDouble("scraper.rateLimit.requestsPerSecond", 2),
+                AppConfig.getInt("scraper.rateLimit.burst", 5)));
+    }
+
+    /**
+     * Returns the limiters created so far, one per host.
+     *
+     * @return The shared limiters.
+     */
+    public static Collection<RateLimiter> all() {
+        return new ArrayList<>(LIMITERS.values());
+    }
+
+    /**
+     * Takes a token, waiting until one is available.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void acquire() throws InterruptedException {
+        acquisitions.incrementAndGet();
+        if (nanosPerToken == 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (double) (now - lastRefillNanos) / nanosPerToken);
+            lastRefillNanos = now;
+            tokens -= 1;
+            // A negative balance is the debt of callers already waiting; this caller waits behind them
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens * nanosPerToken);
+        }
+        if (waitNanos > 0) {
+            delayedAcquisitions.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.get();
+    }
+
+    public long getDelayedAcquisitions() {
+        return delayedAcquisitions.get();
+    }
+
+    /**
+     * Returns the total time callers spent waiting for a token.
+     *
+     * @return The waiting time in milliseconds.
+     */
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        long count = acquisitions.get();
+        return "Rate limiter " + host + ": " + count + " requests, " + delayedAcquisitions.get() + " delayed, waited "
+                + getTotalWaitMillis() + " ms in total (" + (count == 0 ? 0 : getTotalWaitMillis() / count) + " ms per request)";
+    }
+}
@@ -0,0 +1,84 @@
+package ScrapDataToCsvStorage;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import DBConnectControlDB.AppConfig;
+
+/**
+ * Decides how often and after which delay a failed fetch is tried again.
+ * The delay doubles with every attempt up to a ceiling, and half of it is randomized so that workers failing together
+ * do not all come back at the same moment.
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * Constructs a new RetryPolicy.
+     *
+     * @param maxAttempts     The maximum number of attempts, including the first one.
+     * @param baseDelayMillis The delay before the first retry, before jitter.
+     * @param maxDelayMillis  The upper bound of the delay.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = Math.max(1, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+    }
+
+    /**
+     * Creates the policy configured with the 'scraper.retry.*' settings.
+     *
+     * @return The configured RetryPolicy.
+     */
+    public static RetryPolicy fromConfig() {
+        return new RetryPolicy(AppConfig.getInt("scraper.retry.maxAttempts", 3),
+                AppConfig.getLong("scraper.retry.baseDelayMillis", 1000),
+                AppConfig.getLong("scraper.retry.maxDelayMillis", 30000));
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Checks whether another attempt is allowed.
+     *
+     * @param attempt The number of attempts made so far.
+     * @return true if the policy allows one more attempt.
+     */
+    public boolean hasAttemptsLeft(int attempt) {
+        return attempt < maxAttempts;
+    }
+
+    /**
+     * Computes the delay before the next attempt: half of the exponential delay plus a random share of the other half.
+     *
+     * @param attempt The number of attempts made so far, starting at 1.
+     * @return The delay in milliseconds.
+     */
+    public long backoffMillis(int attempt) {
+        int shift = Math.min(Math.max(attempt - 1, 0), 30);
+        long exponential = Math.min(maxDelayMillis, baseDelayMillis << shift);
+        long half = exponential / 2;
+        return half + ThreadLocalRandom.current().nextLong(exponential - half + 1);
+    }
+
+    /**
+     * Waits before the next attempt of a fetch that is retried in place.
+     *
+     * @param attempt The number of attempts made so far, starting at 1.
+     * @return true once the delay has passed, false if the thread was interrupted.
+     */
+    public boolean backoff(int attempt) {
+        try {
+            Thread.sleep(backoffMillis(attempt));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
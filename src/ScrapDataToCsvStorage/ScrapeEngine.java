@@ -0,0 +1,71 @@
+package ScrapDataToCsvStorage;
+
+import java.util.List;
+
+/**
+ * Fetches and parses the thoitiet.vn pages needed by the hourly scraper.
+ * Implementations differ in how pages are loaded: {@link SeleniumScrapeEngine} drives a headless browser,
+ * {@link HttpScrapeEngine} downloads the server-rendered HTML and parses it statically.
+ * The engine used for a run is selected with the 'scraper.engine' setting.
+ */
+public interface ScrapeEngine {
+
+    /**
+     * Retrieves the provinces listed in the site's menu.
+     *
+     * @param regionName The name of the region for which to retrieve provinces. If null or empty, all provinces are retrieved.
+     * @return List of ProvinceInfo objects containing province names and URLs
+     */
+    List<ProvinceInfo> getAllProvinces(String regionName);
+
+    /**
+     * Retrieves the districts linked from a province page.
+     *
+     * @param provinceUrl URL of the province page
+     * @return List of DistrictInfo objects containing district names and URLs
+     * @throws IllegalStateException If the province page cannot be loaded.
+     */
+    List<DistrictInfo> getDistrictsOfProvince(String provinceUrl);
+
+    /**
+     * Retrieves the air quality shown on a location page.
+     *
+     * @param url        URL to scrape for air quality data
+     * @param maxRetries Maximum number of attempts to load the page
+     * @return Air quality as a string, or "Không rõ" if not found
+     */
+    String getAirQuality(String url, int maxRetries);
+
+    /**
+     * Scrapes hourly weather data for the next 3 days from a given URL in a single attempt.
+     *
+     * @param url        The URL of the hourly weather page.
+     * @param province   The name of the province for which the data is being scraped.
+     * @param district   The name of the district for which the data is being scraped.
+     * @param airQuality The air quality information.
+     * @return A list of HourlyWeatherInfo objects containing the scraped weather data.
+     * @throws RuntimeException If the page cannot be loaded or does not contain the expected data.
+     */
+    List<HourlyWeatherInfo> scrapeHourlyWeatherData3Days(String url, String province, String district, String airQuality);
+
+    /**
+     * Scrapes a location with a single page load in a single attempt: the hourly page is loaded once and the air quality
+     * is read from it when the page carries it. Only when it does not is the location's main page loaded for the air quality.
+     * If a fingerprint store is given and the forecast section of the page is unchanged since it was recorded, the stored
+     * rows are returned instead of extracting the page again; their air quality is read again if it came from the main page.
+     *
+     * @param url          The URL of the location's main page, used for the air quality if the hourly page lacks it.
+     * @param hourlyUrl    The URL of the location's hourly weather page.
+     * @param province     The name of the province for which the data is being scraped.
+     * @param district     The name of the district for which the data is being scraped.
+     * @param fingerprints The store of page fingerprints, or null to always extract the page.
+     * @return A list of HourlyWeatherInfo objects containing the scraped weather data and air quality.
+     * @throws RuntimeException If the hourly page cannot be loaded or does not contain the expected data.
+     */
+    List<HourlyWeatherInfo> scrapeLocation(String url, String hourlyUrl, String province, String district, FingerprintStore fingerprints);
+
+    /**
+     * Releases the resources held by the engine, such as browser sessions or HTTP connections.
+     */
+    void shutdown();
+}
@@ -0,0 +1,121 @@
+package ScrapDataToCsvStorage;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Measures the throughput of a complete scraping run against a {@link FixtureServer}, without touching the live site
+ * or the control database.
+ * The fixture server is started on a free port and the scraper is pointed at it; {@link WeatherScrapingHourlyToStorage#scrapeAndSaveToCsv}
+ * then runs end to end, from the discovery of the locations to the completed CSV file, in a temporary directory.
+ * Each run reports the page loads per second, the p50 and p99 page load time seen by the engine, and the peak resident
+ * set size of the JVM (Chrome processes of the Selenium engine are not included).
+ * <p>
+ * The scraper reads its settings once per JVM, so compare engines and pool sizes with one JVM per configuration, e.g.
+ * {@code -Dscraper.engine=http -Dscraper.threads=8}. Latency and error injection use the 'fixture.*' settings.
+ * The first run discovers the locations; later runs of the same JVM start from the cached catalog.
+ * <p>
+ * Usage: {@code ScraperBenchmark <fixture directory> [region] [runs]}
+ */
+public class ScraperBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The fixture directory and, optionally, the region to scrape and the number of runs.
+     * @throws IOException If the fixture server or the temporary directory cannot be created.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ScraperBenchmark <fixture directory> [region] [runs]");
+            return;
+        }
+        Path fixtureDirectory = Paths.get(args[0]);
+        if (!Files.isRegularFile(FixtureServer.fileOf(fixtureDirectory.toAbsolutePath().normalize(), "/"))) {
+            System.err.println("No recorded home page in " + fixtureDirectory + ", record one with FixtureServer record");
+            return;
+        }
+        String regionName = args.length > 1 ? args[1] : WeatherScrapingHourlyToStorage.All;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        FixtureServer server = FixtureServer.fromConfig(fixtureDirectory);
+        server.start(0);
+        Path workDirectory = Files.createTempDirectory("scraper-benchmark");
+        try {
+            // Must be set before the scraper classes are initialized, since they read their settings once
+            setDefault("scraper.baseUrl", server.getOrigin());
+            setDefault("scraper.control.enabled", "false");
+            setDefault("scraper.hostIp", "127.0.0.1");
+            setDefault("scraper.resume", "false");
+            setDefault("scraper.fingerprints.enabled", "false");
+            setDefault("scraper.rateLimit.requestsPerSecond", "0");
+            setDefault("scraper.catalog.directory", workDirectory.resolve("catalog").toString());
+            System.out.println("Engine: " + System.getProperty("scraper.engine", "config default")
+                    + ", threads: " + System.getProperty("scraper.threads", "config default")
+                    + ", scheduler: " + System.getProperty("scraper.scheduler", "config default"));
+
+            for (int run = 1; run <= runs; run++) {
+                LatencyHistogram pageLoads = LatencyHistogram.pageLoads();
+                pageLoads.reset();
+                long servedBefore = server.getServedPages();
+                long errorsBefore = server.getInjectedErrors();
+                long start = System.nanoTime();
+
+                WeatherScrapingHourlyToStorage.scrapeAndSaveToCsv(regionName, workDirectory.toString());
+
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.println("=== Run " + run + "/" + runs + " ===");
+                System.out.printf("Elapsed:          %.1f s%n", seconds);
+                System.out.printf("Throughput:       %.1f URLs/s (%d page loads)%n", pageLoads.getCount() / seconds, pageLoads.getCount());
+                System.out.printf("Page load time:   p50 %.1f ms, p99 %.1f ms%n", pageLoads.percentileMillis(50), pageLoads.percentileMillis(99));
+                System.out.println("Fixture server:   " + (server.getServedPages() - servedBefore) + " pages served, "
+                        + (server.getInjectedErrors() - errorsBefore) + " errors injected, " + server.getMissingPages() + " missing pages so far");
+                System.out.println("Peak RSS:         " + peakResidentSetSize());
+            }
+            System.out.println("CSV files written to " + workDirectory);
+        } finally {
+            server.stop();
+        }
+        System.exit(0);
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Reads the peak resident set size of the process from /proc on Linux, or sums the peak usage of the heap pools elsewhere.
+     *
+     * @return A printable description of the peak memory use.
+     */
+    private static String peakResidentSetSize() {
+        Path status = Paths.get("/proc/self/status");
+        if (Files.isReadable(status)) {
+            try {
+                List<String> lines = Files.readAllLines(status);
+                for (String line : lines) {
+                    if (line.startsWith("VmHWM:")) {
+                        return line.substring("VmHWM:".length()).trim();
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Unable to read " + status + ": " + e.getMessage());
+            }
+        }
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        return (peakHeap / 1024) + " kB (peak heap, RSS not available)";
+    }
+}
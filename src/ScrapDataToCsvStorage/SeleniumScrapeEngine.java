@@ -0,0 +1,533 @@
+package ScrapDataToCsvStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import DBConnectControlDB.AppConfig;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+
+/**
+ * Scrape engine driving headless Chrome through Selenium WebDriver.
+ * Browser sessions are borrowed from a bounded {@link WebDriverPool} and reused across pages.
+ */
+public class SeleniumScrapeEngine implements ScrapeEngine {
+
+    private static final RetryPolicy RETRY_POLICY = RetryPolicy.fromConfig();
+
+    /**
+     * Whether hourly pages are extracted with a single script call instead of one findElement call per field.
+     */
+    private static final boolean SCRIPT_EXTRACTION = AppConfig.getBoolean("scraper.selenium.scriptExtraction", true);
+
+    /**
+     * Reads every forecast block of an hourly page at once. Each block is opened first, as the element-by-element path
+     * does with click(), so innerText returns the same rendered text as WebElement.getText(). Missing fields are null.
+     */
+    private static final String EXTRACTION_SCRIPT = String.join("\n",
+            "function text(root, selector) {",
+            "  var element = root.querySelector(selector);",
+            "  return element ? element.innerText.trim() : null;",
+            "}",
+            "function textAfterHeading(root, label, childTag) {",
+            "  var headings = root.querySelectorAll('h6');",
+            "  for (var i = 0; i < headings.length; i++) {",
+            "    if (headings[i].textContent.indexOf(label) < 0) continue;",
+            "    for (var sibling = headings[i].nextElementSibling; sibling; sibling = sibling.nextElementSibling) {",
+            "      if (sibling.tagName !== 'DIV') continue;",
+            "      for (var j = 0; j < sibling.children.length; j++) {",
+            "        if (sibling.children[j].tagName === childTag) return sibling.children[j].innerText.trim();",
+            "      }",
+            "    }",
+            "  }",
+            "  return null;",
+            "}",
+            "var blocks = [];",
+            "var details = document.querySelectorAll('details.weather-day');",
+            "for (var i = 0; i < details.length; i++) {",
+            "  var detail = details[i];",
+            "  detail.open = true;",
+            "  blocks.push({",
+            "    time: text(detail, '.summary-day span'),",
+            "    temperatureMin: text(detail, '.summary-temperature-min'),",
+            "    temperatureMax: text(detail, '.summary-temperature-max-value'),",
+            "    description: text(detail, '.summary-description-detail'),",
+            "    humidity: text(detail, '.summary-humidity > span:last-child'),",
+            "    windSpeed: text(detail, '.summary-speed > span:last-child'),",
+            "    uvIndex: text(detail, '.weather-content-item .op-8.fw-bold'),",
+            "    visibility: textAfterHeading(detail, 'Tầm nhìn', 'SPAN'),",
+            "    pressure: textAfterHeading(detail, 'Áp suất', 'H3')",
+            "  });",
+            "}",
+            "var dewPoint = document.querySelector(\".weather-detail .d-flex:has(.avatar-img svg[name='dewpoint']) .ml-auto > h3\");",
+            "return {blocks: blocks, dewPoint: dewPoint ? dewPoint.innerText : null};");
+
+    private final WebDriverPool driverPool;
+
+    /**
+     * Constructs a new SeleniumScrapeEngine.
+     *
+     * @param maxSessions        The maximum number of browser sessions alive at the same time.
+     * @param maxPagesPerSession The number of pages a browser session serves before it is recycled.
+     */
+    public SeleniumScrapeEngine(int maxSessions, int maxPagesPerSession) {
+        this.driverPool = new WebDriverPool(() -> new ChromeDriver(createChromeOption()), maxSessions, maxPagesPerSession);
+    }
+
+    /**
+     * Borrows a browser session from the pool, waiting until one is available.
+     *
+     * @return A WebDriver session that must be given back with {@link WebDriverPool#release(WebDriver)}, or discarded
+     * with {@link WebDriverPool#invalidate(WebDriver)} if using it failed.
+     */
+    private WebDriver borrowDriver() {
+        try {
+            return driverPool.borrow();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a WebDriver session", e);
+        }
+    }
+
+    @Override
+    public List<ProvinceInfo> getAllProvinces(String regionName) {
+        List<ProvinceInfo> provinces = new ArrayList<>();
+        WebDriver driver = borrowDriver();
+
+        try {
+            getWithRetry(driver, WeatherScrapingHourlyToStorage.BASE_URL, 3);
+
+            List<WebElement> provinceElements;
+
+            if (regionName == null || regionName.isEmpty()) {
+                // If regionName is null or empty, get all provinces
+                provinceElements = driver.findElements(By.cssSelector(".dropdown-menu .mega-submenu a"));
+            } else {
+                // Find the div that contains the given region name
+                WebElement regionDiv = driver.findElement(By.xpath("//h6[text()='" + regionName + "']/ancestor::div[contains(@class, 'col-megamenu')]"));
+                // Find all province elements within this div
+                provinceElements = regionDiv.findElements(By.cssSelector("ul.mega-submenu a"));
+            }
+
+            for (WebElement provinceElement : provinceElements) {
+                String provinceName = provinceElement.getAttribute("title");
+                String provinceUrl = provinceElement.getAttribute("href");
+                provinces.add(new ProvinceInfo(provinceName, provinceUrl));
+            }
+        } catch (RuntimeException e) {
+            // The session may be what failed, so it is quit instead of going back to the pool
+            driverPool.invalidate(driver);
+            throw e;
+        } finally {
+            driverPool.release(driver);
+        }
+
+        return provinces;
+    }
+
+    /**
+     * Attempts to load a page with a given URL, retrying up to a specified number of times.
+     * This method is used to handle intermittent network or server issues by retrying the page load
+     * with the backoff of the retry policy. Every attempt waits while the host's circuit breaker is open,
+     * takes a token from the host's rate limiter and reports its outcome to the breaker.
+     *
+     * @param driver     The WebDriver instance used to load the page.
+     * @param url        The URL to be loaded.
+     * @param maxRetries The maximum number of retry attempts.
+     * @return true if the page is successfully loaded, false otherwise.
+     * @throws NoSuchSessionException      If the browser session has ended.
+     * @throws UnreachableBrowserException If the browser no longer answers.
+     */
+    private static boolean getWithRetry(WebDriver driver, String url, int maxRetries) {
+        CircuitBreaker breaker = CircuitBreaker.forUrl(url);
+        RateLimiter rateLimiter = RateLimiter.forUrl(url);
+        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            try {
+                breaker.awaitPermission();
+                rateLimiter.acquire();
+                long startNanos = System.nanoTime();
+                driver.get(url);
+                LatencyHistogram.pageLoads().recordSince(startNanos);
+                breaker.recordSuccess();
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (NoSuchSessionException | UnreachableBrowserException e) {
+                // The browser is gone, retrying on this session cannot succeed
+                throw e;
+            } catch (Exception e) {
+                breaker.recordFailure();
+                System.err.println("Error accessing URL: " + url + ". Retry attempt " + attempt);
+                if (attempt < maxRetries && !RETRY_POLICY.backoff(attempt)) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public List<DistrictInfo> getDistrictsOfProvince(String provinceUrl) {
+        List<DistrictInfo> districts = new ArrayList<>();
+        WebDriver driver = borrowDriver();
+
+        try {
+            if (!getWithRetry(driver, provinceUrl, 3)) {
+                throw new IllegalStateException("Unable to load URL: " + provinceUrl);
+            }
+
+            List<WebElement> districtElements = driver.findElements(By.cssSelector(".khu-vuc-lan-can a"));
+
+            for (WebElement districtElement : districtElements) {
+                String districtName = districtElement.getText();
+                String districtUrl = districtElement.getAttribute("href");
+                districts.add(new DistrictInfo(districtName, districtUrl));
+            }
+        } catch (RuntimeException e) {
+            // The session may be what failed, so it is quit instead of going back to the pool
+            driverPool.invalidate(driver);
+            throw e;
+        } finally {
+            driverPool.release(driver);
+        }
+
+        return districts;
+    }
+
+    /**
+     * Safely gets text from a WebElement, returns a default value if not found.
+     *
+     * @param detail       WebElement to search within
+     * @param selector     By selector to find the desired element
+     * @param defaultValue Default value to return if element is not found
+     * @return String value of the element or default value
+     */
+    private static String safelyGetText(WebElement detail, By selector, String defaultValue) {
+        try {
+            return detail.findElement(selector).getText();
+        } catch (NoSuchElementException e) {
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public String getAirQuality(String url, int maxRetries) {
+        WebDriver driver = borrowDriver();
+        try {
+            getWithRetry(driver, url, maxRetries);
+            String airQuality = findAirQuality(driver);
+            if (airQuality == null) {
+                System.err.println("Air quality information not found.");
+                return "Không rõ";
+            }
+            return airQuality;
+        } catch (RuntimeException e) {
+            // The session may be what failed, so it is quit instead of going back to the pool
+            driverPool.invalidate(driver);
+            throw e;
+        } finally {
+            driverPool.release(driver);
+        }
+    }
+
+    /**
+     * Reads the air quality from the page currently loaded in the driver.
+     *
+     * @param driver The WebDriver instance holding the page.
+     * @return The air quality, or null if the page does not show it.
+     */
+    private static String findAirQuality(WebDriver driver) {
+        List<WebElement> airQualityElements = driver.findElements(By.cssSelector(".air-rules .air-active"));
+        return airQualityElements.isEmpty() ? null : airQualityElements.get(0).getText().trim();
+    }
+
+    @Override
+    public List<HourlyWeatherInfo> scrapeLocation(String url, String hourlyUrl, String province, String district, FingerprintStore fingerprints) {
+        WebDriver driver = borrowDriver();
+        try {
+            if (!getWithRetry(driver, hourlyUrl, 1)) {
+                throw new IllegalStateException("Unable to load URL: " + hourlyUrl);
+            }
+
+            String fingerprint = null;
+            FingerprintStore.Entry cached = null;
+            if (fingerprints != null) {
+                fingerprint = FingerprintStore.fingerprintOf(forecastSectionOf(driver));
+                cached = fingerprints.get(hourlyUrl);
+                if (cached != null && cached.getFingerprint().equals(fingerprint)) {
+                    fingerprints.recordUnchanged();
+                    List<HourlyWeatherInfo> rows = cached.copyRows();
+                    if (cached.isAirQualityFromHourlyPage()) {
+                        AirQualitySources.shared().recordHourlyPage();
+                    } else {
+                        // The fingerprint does not cover an air quality read from the main page, so read it again
+                        setMainPageAirQuality(driver, url, hourlyUrl, rows);
+                    }
+                    return rows;
+                }
+            }
+
+            String airQuality = findAirQuality(driver);
+            List<HourlyWeatherInfo> hourlyData = parseHourlyWeatherData3Days(driver, hourlyUrl, province, district, airQuality);
+            if (airQuality == null) {
+                // The hourly page does not carry the air quality, read it from the location's main page
+                setMainPageAirQuality(driver, url, hourlyUrl, hourlyData);
+            } else {
+                AirQualitySources.shared().recordHourlyPage();
+            }
+            if (fingerprints != null) {
+                fingerprints.recordChanged();
+                fingerprints.put(hourlyUrl, fingerprint, null, null, airQuality != null, hourlyData);
+            }
+            return hourlyData;
+        } catch (RuntimeException e) {
+            // The session may be what failed, so it is quit instead of going back to the pool
+            driverPool.invalidate(driver);
+            throw e;
+        } finally {
+            driverPool.release(driver);
+        }
+    }
+
+    /**
+     * Loads a location's main page and sets its air quality on the rows of the location.
+     */
+    private void setMainPageAirQuality(WebDriver driver, String url, String hourlyUrl, List<HourlyWeatherInfo> rows) {
+        AirQualitySources.shared().recordMainPageFallback(hourlyUrl);
+        getWithRetry(driver, url, 3);
+        String airQuality = findAirQuality(driver);
+        if (airQuality == null) {
+            System.err.println("Air quality information not found.");
+            airQuality = "Không rõ";
+        }
+        for (HourlyWeatherInfo info : rows) {
+            info.setAirQuality(airQuality);
+        }
+    }
+
+    /**
+     * Collects the parts of the loaded hourly page that the extracted rows depend on: the forecast blocks, the dew point
+     * and the air quality, read in a single script call instead of one WebDriver round trip per block.
+     *
+     * @param driver The WebDriver instance holding the hourly page.
+     * @return The text to fingerprint.
+     */
+    private static String forecastSectionOf(WebDriver driver) {
+        Object section = ((JavascriptExecutor) driver).executeScript(
+                "var parts = Array.prototype.map.call(document.querySelectorAll('details.weather-day'), function (d) { return d.textContent; });"
+                        + "var dew = document.querySelector(\".weather-detail .d-flex:has(.avatar-img svg[name='dewpoint']) .ml-auto > h3\");"
+                        + "var air = document.querySelector('.air-rules .air-active');"
+                        + "return parts.join('\\n') + '\\n' + (dew ? dew.textContent : '') + '\\n' + (air ? air.textContent : '');");
+        return String.valueOf(section);
+    }
+
+    /**
+     * Creates and configures ChromeOptions for the WebDriver.
+     * This method sets various properties and arguments for the ChromeDriver,
+     * such as headless mode and disabling images for better performance.
+     *
+     * @return Configured ChromeOptions object.
+     */
+    static ChromeOptions createChromeOption() {
+        ChromeOptions chromeOptions = new ChromeOptions();
+        chromeOptions.addArguments("--headless");
+        chromeOptions.addArguments("--no-sandbox");
+        chromeOptions.addArguments("--disable-dev-shm-usage");
+//		chromeOptions.addArguments("--disable-gpu"); // Disables GPU hardware acceleration
+        chromeOptions.addArguments("--disable-extensions"); // Disabling extensions
+        chromeOptions.addArguments("--disable-popup-blocking"); // Disabling popups
+        chromeOptions.addArguments("disable-infobars"); // Disabling infobars
+        chromeOptions.addArguments("--disable-images"); // Disable images
+        chromeOptions.addArguments("--blink-settings=imagesEnabled=false"); // More aggressive image disabling
+        // Add any additional arguments that are relevant to your use case
+
+        // Optional: Set timeouts for script and page load, if needed
+        // driver.manage().timeouts().pageLoadTimeout(40, TimeUnit.SECONDS);
+        // driver.manage().timeouts().setScriptTimeout(60, TimeUnit.SECONDS);
+
+        return chromeOptions;
+    }
+
+    @Override
+    public List<HourlyWeatherInfo> scrapeHourlyWeatherData3Days(String url, String province, String district, String airQuality) {
+        WebDriver driver = borrowDriver();
+        try {
+            return scrapeHourlyWeatherData3Days(driver, url, province, district, airQuality);
+        } catch (RuntimeException e) {
+            // The session may be what failed, so it is quit instead of going back to the pool
+            driverPool.invalidate(driver);
+            throw e;
+        } finally {
+            driverPool.release(driver);
+        }
+    }
+
+    /**
+     * Scrapes hourly weather data for the next 3 days from a given URL.
+     * The method parses the web page to extract relevant weather data like temperature,
+     * humidity, wind speed, etc., and returns a list of HourlyWeatherInfo objects.
+     *
+     * @param driver     The WebDriver instance used for scraping.
+     * @param url        The URL of the weather data page.
+     * @param province   The name of the province for which the data is being scraped.
+     * @param district   The name of the district for which the data is being scraped.
+     * @param airQuality The air quality information.
+     * @return A list of HourlyWeatherInfo objects containing the scraped weather data.
+     */
+    public static List<HourlyWeatherInfo> scrapeHourlyWeatherData3Days(WebDriver driver, String url, String province, String district, String airQuality) {
+        if (!getWithRetry(driver, url, 1)) {
+            throw new IllegalStateException("Unable to load URL: " + url);
+        }
+        return parseHourlyWeatherData3Days(driver, url, province, district, airQuality);
+    }
+
+    /**
+     * Extracts the hourly weather data for the next 3 days from the page currently loaded in the driver,
+     * with a single script call or element by element depending on 'scraper.selenium.scriptExtraction'.
+     *
+     * @param driver     The WebDriver instance holding the hourly page.
+     * @param url        The URL of the weather data page.
+     * @param province   The name of the province for which the data is being scraped.
+     * @param district   The name of the district for which the data is being scraped.
+     * @param airQuality The air quality information.
+     * @return A list of HourlyWeatherInfo objects containing the scraped weather data.
+     */
+    private static List<HourlyWeatherInfo> parseHourlyWeatherData3Days(WebDriver driver, String url, String province, String district, String airQuality) {
+        if (SCRIPT_EXTRACTION) {
+            return extractWithScript(driver, url, province, district, airQuality);
+        }
+        return extractWithElements(driver, url, province, district, airQuality);
+    }
+
+    /**
+     * Extracts the hourly weather data in one {@link JavascriptExecutor} call. The script opens every forecast block,
+     * reads all of its fields and returns them as a list of maps, so a page costs one WebDriver round trip
+     * instead of about ten per block.
+     *
+     * @param driver     The WebDriver instance holding the hourly page.
+     * @param url        The URL of the weather data page.
+     * @param province   The name of the province for which the data is being scraped.
+     * @param district   The name of the district for which the data is being scraped.
+     * @param airQuality The air quality information.
+     * @return A list of HourlyWeatherInfo objects containing the scraped weather data.
+     * @throws IllegalStateException If the page does not contain the dew point, which means it is not an hourly page.
+     */
+    @SuppressWarnings("unchecked")
+    static List<HourlyWeatherInfo> extractWithScript(WebDriver driver, String url, String province, String district, String airQuality) {
+        Map<String, Object> payload = (Map<String, Object>) ((JavascriptExecutor) driver).executeScript(EXTRACTION_SCRIPT);
+        Object dewPoint = payload.get("dewPoint");
+        if (dewPoint == null) {
+            throw new IllegalStateException("Dew point not found on " + url);
+        }
+
+        List<HourlyWeatherInfo> hourlyData = new ArrayList<>();
+        LocalDate currentDate = LocalDate.now();
+        for (Map<String, Object> block : (List<Map<String, Object>>) payload.get("blocks")) {
+            HourlyWeatherInfo info = new HourlyWeatherInfo();
+
+            // Determine if it should be a new date
+            String timeString = valueOrDefault(block, "time", "Không rõ thời gian").trim();
+            if (timeString.contains("/")) {
+                currentDate = currentDate.plusDays(1);
+            }
+
+            String time = timeString.contains("/") ? "00:00" : timeString;
+            info.setTime(time);
+            info.setDate(currentDate.toString());
+
+            info.setTemperatureMin(valueOrDefault(block, "temperatureMin", "Không rõ nhiệt độ thấp nhất"));
+            info.setTemperatureMax(valueOrDefault(block, "temperatureMax", "Không rõ nhiệt độ cao nhất"));
+            info.setDescription(valueOrDefault(block, "description", "Không rõ mô tả"));
+            info.setHumidity(valueOrDefault(block, "humidity", "Không có dữ liệu Độ ẩm"));
+            info.setWindSpeed(valueOrDefault(block, "windSpeed", "Không có dữ liệu Tốc độ gió"));
+            info.setUvIndex(valueOrDefault(block, "uvIndex", "Không có dữ liệu UV"));
+            info.setVisibility(valueOrDefault(block, "visibility", "Không có dữ liệu Tầm nhìn"));
+            info.setPressure(valueOrDefault(block, "pressure", "Không có dữ liệu Áp suất"));
+            info.setStopPoint(dewPoint.toString().trim());
+            info.setUrl(url);
+            info.setProvince(province);
+            info.setDistrict(district);
+            info.setAirQuality(airQuality);
+
+            hourlyData.add(info);
+        }
+        return hourlyData;
+    }
+
+    /**
+     * Reads a field returned by the extraction script, the counterpart of {@link #safelyGetText(WebElement, By, String)}.
+     */
+    private static String valueOrDefault(Map<String, Object> block, String field, String defaultValue) {
+        Object value = block.get(field);
+        return value != null ? value.toString() : defaultValue;
+    }
+
+    /**
+     * Extracts the hourly weather data element by element: each forecast block is clicked open and every field is read
+     * with its own findElement call.
+     *
+     * @param driver     The WebDriver instance holding the hourly page.
+     * @param url        The URL of the weather data page.
+     * @param province   The name of the province for which the data is being scraped.
+     * @param district   The name of the district for which the data is being scraped.
+     * @param airQuality The air quality information.
+     * @return A list of HourlyWeatherInfo objects containing the scraped weather data.
+     */
+    static List<HourlyWeatherInfo> extractWithElements(WebDriver driver, String url, String province, String district, String airQuality) {
+        List<HourlyWeatherInfo> hourlyData = new ArrayList<>();
+        List<WebElement> weatherDetails = driver.findElements(By.cssSelector("details.weather-day"));
+
+        String dewPointSelector = ".weather-detail .d-flex:has(.avatar-img svg[name='dewpoint']) .ml-auto > h3";
+        WebElement dewPointElement = driver.findElement(By.cssSelector(dewPointSelector));
+        String dewPoint = dewPointElement.getText().trim();
+
+        LocalDate currentDate = LocalDate.now();
+
+        for (WebElement detail : weatherDetails) {
+            detail.click();
+            HourlyWeatherInfo info = new HourlyWeatherInfo();
+
+            // Determine if it should be a new date
+            String timeString = safelyGetText(detail, By.cssSelector(".summary-day span"), "Không rõ thời gian").trim();
+            if (timeString.contains("/")) {
+                currentDate = currentDate.plusDays(1);
+            }
+
+            String time = timeString.contains("/") ? "00:00" : timeString;
+            info.setTime(time);
+            info.setDate(currentDate.toString());
+
+            info.setTemperatureMin(safelyGetText(detail, By.cssSelector(".summary-temperature-min"), "Không rõ nhiệt độ thấp nhất"));
+            info.setTemperatureMax(safelyGetText(detail, By.cssSelector(".summary-temperature-max-value"), "Không rõ nhiệt độ cao nhất"));
+            info.setDescription(safelyGetText(detail, By.cssSelector(".summary-description-detail"), "Không rõ mô tả"));
+            info.setHumidity(safelyGetText(detail, By.cssSelector(".summary-humidity > span:last-child"), "Không có dữ liệu Độ ẩm"));
+            info.setWindSpeed(safelyGetText(detail, By.cssSelector(".summary-speed > span:last-child"), "Không có dữ liệu Tốc độ gió"));
+            info.setUvIndex(safelyGetText(detail, By.cssSelector(".weather-content-item .op-8.fw-bold"), "Không có dữ liệu UV"));
+            info.setVisibility(safelyGetText(detail, By.xpath(".//h6[contains(text(), 'Tầm nhìn')]/following-sibling::div/span"), "Không có dữ liệu Tầm nhìn"));
+            info.setPressure(safelyGetText(detail, By.xpath(".//h6[contains(text(), 'Áp suất')]/following-sibling::div/h3"), "Không có dữ liệu Áp suất"));
+            info.setStopPoint(dewPoint);
+            info.setUrl(url);
+            info.setProvince(province);
+            info.setDistrict(district);
+            info.setAirQuality(airQuality);
+
+            hourlyData.add(info);
+        }
+        return hourlyData;
+    }
+
+    @Override
+    public void shutdown() {
+        driverPool.shutdown();
+    }
+}
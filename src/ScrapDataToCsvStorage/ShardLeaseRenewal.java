@@ -0,0 +1,96 @@
+package ScrapDataToCsvStorage;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import DBConnectControlDB.ControlDatabaseManager;
+import DBConnectControlDB.DatabaseConnector;
+
+/**
+ * Renews the lease of a shard on a background thread while the shard is being scraped.
+ * The renewal uses a control database connection of its own, opened outside the pool on first use and closed with the
+ * renewal, so it never shares a connection with the calls that complete or release the shard.
+ * {@link #close()} waits for a renewal in progress before it returns; only then may the shard be completed or released.
+ */
+public class ShardLeaseRenewal implements AutoCloseable {
+
+    private static final long STOP_TIMEOUT_SECONDS = 30;
+
+    private final String runCode;
+    private final String shardKey;
+    private final String owner;
+    private final Duration lease;
+    private final ScheduledExecutorService scheduler;
+
+    // Only used on the renewal thread, and by close() once that thread has terminated
+    private ControlDatabaseManager dbManager;
+
+    /**
+     * Starts renewing the lease of a shard every third of its duration.
+     *
+     * @param runCode  The code identifying the run.
+     * @param shardKey The key of the shard.
+     * @param owner    The identity of this process.
+     * @param lease    The duration of the lease, see 'scraper.shards.leaseMinutes'.
+     */
+    public ShardLeaseRenewal(String runCode, String shardKey, String owner, Duration lease) {
+        this.runCode = runCode;
+        this.shardKey = shardKey;
+        this.owner = owner;
+        this.lease = lease;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shard-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, lease.toSeconds() / 3);
+        scheduler.scheduleAtFixedRate(this::renew, period, period, TimeUnit.SECONDS);
+    }
+
+    private void renew() {
+        try {
+            if (dbManager == null) {
+                dbManager = new ControlDatabaseManager(DatabaseConnector.openConnection("control"));
+            }
+            if (!dbManager.renewShardLease(runCode, shardKey, owner, lease.toSeconds())) {
+                System.err.println("Lease of shard " + shardKey + " is no longer held by this process");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            // Open a new connection for the next renewal
+            closeConnection();
+        }
+    }
+
+    private void closeConnection() {
+        if (dbManager != null) {
+            try {
+                dbManager.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            dbManager = null;
+        }
+    }
+
+    /**
+     * Stops renewing the lease, waiting for a renewal in progress, and closes the renewal's connection.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Lease renewal of shard " + shardKey + " did not stop within " + STOP_TIMEOUT_SECONDS + " s");
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        closeConnection();
+    }
+}
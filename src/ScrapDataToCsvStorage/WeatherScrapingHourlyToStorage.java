@@ -1,36 +1,44 @@
 package ScrapDataToCsvStorage;
 
 import java.io.*;
-import java.net.URL;
+import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import DBConnectControlDB.AppConfig;
 import DBConnectControlDB.ControlDatabaseManager;
-import org.openqa.selenium.By;
-import org.openqa.selenium.NoSuchElementException;
-import org.openqa.selenium.TimeoutException;
-import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.WebElement;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.chrome.ChromeOptions;
 
 /**
  * Class for scraping weather data hourly and storing it in a CSV file.
- * This class uses Selenium WebDriver for web scraping and handles different
+ * This class uses a pluggable {@link ScrapeEngine} (Selenium WebDriver or plain HTTP) for web scraping and handles different
  * aspects of the process including fetching data from URLs, parsing weather
  * information, and saving it into a CSV format.
  */
@@ -56,6 +64,167 @@ public class WeatherScrapingHourlyToStorage {
      */
     public static int TOTAL_URL = 1542;
 
+
+    /**
+     * The base URL of the weather website.
+     */
+    public static final String BASE_URL = AppConfig.getString("scraper.baseUrl", "https://thoitiet.vn");
+
+    /**
+     * The number of worker threads scraping weather pages concurrently.
+     */
+    private static final int SCRAPER_THREADS = AppConfig.getInt("scraper.threads", 2);
+
+    /**
+     * The number of threads discovering the districts of provinces while the workers are already scraping.
+     */
+    private static final int DISCOVERY_THREADS = AppConfig.getInt("scraper.discoveryThreads", 2);
+
+    /**
+     * The capacity of the queue between the discovery stage and the scraping workers.
+     */
+    private static final int LOCATION_QUEUE_CAPACITY = AppConfig.getInt("scraper.locationQueueCapacity", 64);
+
+    /**
+     * The maximum number of page requests in flight at the same time.
+     */
+    private static final int MAX_CONCURRENT_REQUESTS = AppConfig.getInt("scraper.maxConcurrentRequests", 64);
+
+    /**
+     * Limits the number of page requests in flight at the same time, whatever the number of scraping tasks.
+     */
+    private static final Semaphore requestPermits = new Semaphore(MAX_CONCURRENT_REQUESTS, true);
+
+    /**
+     * The maximum number of scraped locations waiting to be written to the CSV file.
+     */
+    private static final int WRITER_QUEUE_CAPACITY = AppConfig.getInt("scraper.writerQueueCapacity", 64);
+
+    /**
+     * Whether a run continues the partial CSV file and journal left behind by a failed run of the same region.
+     */
+    private static final boolean RESUME = AppConfig.getBoolean("scraper.resume", true);
+
+    /**
+     * The age after which a partial CSV file is considered stale and the region is scraped from scratch.
+     */
+    private static final Duration RESUME_MAX_AGE = Duration.ofHours(AppConfig.getLong("scraper.resume.maxAgeHours", 12));
+
+    /**
+     * The directory holding the cached province and district catalogs.
+     */
+    private static final Path CATALOG_DIRECTORY = Paths.get(AppConfig.getString("scraper.catalog.directory", "catalog"));
+
+    /**
+     * The age after which a cached catalog is no longer used and the locations are discovered again during the run.
+     */
+    private static final Duration CATALOG_TTL = Duration.ofHours(AppConfig.getLong("scraper.catalog.ttlHours", 168));
+
+    /**
+     * The age after which a cached catalog is still used but refreshed in the background.
+     */
+    private static final Duration CATALOG_REVALIDATE_AFTER = Duration.ofHours(AppConfig.getLong("scraper.catalog.revalidateHours", 24));
+
+    /**
+     * Whether unchanged hourly pages reuse the rows recorded for them by an earlier run of the same day instead of being
+     * extracted again.
+     */
+    private static final boolean FINGERPRINTS_ENABLED = AppConfig.getBoolean("scraper.fingerprints.enabled", false);
+
+    /**
+     * The retry policy for failed locations, configured with the 'scraper.retry.*' settings.
+     */
+    private static final RetryPolicy RETRY_POLICY = RetryPolicy.fromConfig();
+
+    /**
+     * Marks the end of the location queue; each worker stops when it takes it.
+     */
+    private static final LocationTask END_OF_LOCATIONS = new LocationTask("", "", "", "");
+
+    /**
+     * Whether a location is scraped with a single page load, see {@link #scrapeLocation}.
+     */
+    private static final boolean COMBINED_EXTRACTION = AppConfig.getBoolean("scraper.combinedExtraction", true);
+
+    /**
+     * The directory where the CSV files are saved; for a sharded run on several machines it must be shared storage.
+     */
+    private static final String OUTPUT_DIRECTORY = AppConfig.getString("scraper.outputDirectory", "D:\\dataWeatherCsv");
+
+    /**
+     * How {@link #scrapeShardsToCsv} splits a run: "region" gives each region of 'scraper.shards.regions' its own shard,
+     * "hash" spreads the locations of all regions over 'scraper.shards.count' shards. "off" (default) runs
+     * {@link #scrapeAndSaveToCsv} for a single region in a single process.
+     */
+    private static final String SHARD_MODE = AppConfig.getString("scraper.shards.mode", "off");
+
+    /**
+     * The number of shards of a hash-sharded run.
+     */
+    private static final int SHARD_COUNT = AppConfig.getInt("scraper.shards.count", 8);
+
+    /**
+     * How long a claimed shard stays reserved for its process without being renewed.
+     */
+    private static final Duration SHARD_LEASE = Duration.ofMinutes(AppConfig.getLong("scraper.shards.leaseMinutes", 15));
+
+    /**
+     * The number of times a shard is claimed before it is given up.
+     */
+    private static final int SHARD_MAX_ATTEMPTS = AppConfig.getInt("scraper.shards.maxAttempts", 3);
+
+    /**
+     * Whether {@link #scrapeAndSaveToCsv} checks and records the process in the control database.
+     * Only turned off for offline benchmarks, see {@link ScraperBenchmark}.
+     */
+    private static final boolean CONTROL_ENABLED = AppConfig.getBoolean("scraper.control.enabled", true);
+
+    /**
+     * Whether the scraping process may succeed once per hour ('scraper.runEvery=hour') instead of once per day, so that
+     * the merge refresh mode of the loader can bring every hourly forecast into staging.
+     */
+    private static final boolean HOURLY_RUNS = AppConfig.getString("scraper.runEvery", "day").equalsIgnoreCase("hour");
+
+    private static ScrapeEngine engine;
+
+    /**
+     * The page fingerprints of the current run, or null when fingerprinting is disabled.
+     */
+    private static FingerprintStore fingerprints;
+
+    /**
+     * Returns the scrape engine used for this run, creating it on first use.
+     * The engine is selected with the 'scraper.engine' setting: "selenium" (default) drives headless Chrome,
+     * "http" downloads the pages with HttpClient and parses them without a browser.
+     *
+     * @return The shared ScrapeEngine.
+     */
+    private static synchronized ScrapeEngine getEngine() {
+        if (engine == null) {
+            String engineName = AppConfig.getString("scraper.engine", "selenium");
+            if (engineName.equalsIgnoreCase("http")) {
+                engine = new HttpScrapeEngine(Duration.ofSeconds(AppConfig.getInt("scraper.http.timeoutSeconds", 30)));
+            } else {
+                // One browser session per worker thread plus one per thread discovering provinces and districts
+                engine = new SeleniumScrapeEngine(SCRAPER_THREADS + DISCOVERY_THREADS, AppConfig.getInt("scraper.driver.maxPagesPerSession", 50));
+            }
+            System.out.println("Using scrape engine: " + engine.getClass().getSimpleName());
+        }
+        return engine;
+    }
+
+    /**
+     * Releases the resources held by the scrape engine. A new engine is created if it is needed again.
+     */
+    private static synchronized void shutdownEngine() {
+        if (engine != null) {
+            engine.shutdown();
+            engine = null;
+            System.out.println(AirQualitySources.shared());
+            AirQualitySources.shared().reset();
+        }
+    }
+
     /**
      * Sets the System output to UTF-8 encoding.
      * This method is used to ensure that the console output can handle UTF-8 characters,
@@ -73,6 +242,50 @@ public class WeatherScrapingHourlyToStorage {
         }
     }
 
+    /**
+     * Creates the executor running the scraping tasks, according to the 'scraper.scheduler' setting.
+     * "fixed" (default) uses a pool of 'scraper.threads' platform threads. "virtual" starts one virtual thread per task,
+     * so that tasks blocked on I/O cost almost nothing and the number of requests in flight is only bounded by
+     * 'scraper.maxConcurrentRequests'. Virtual threads need Java 21; on older JVMs the fixed pool is used instead.
+     *
+     * @return The ExecutorService for the scraping tasks.
+     */
+    private static ExecutorService createExecutorService() {
+        String scheduler = AppConfig.getString("scraper.scheduler", "fixed");
+        if (scheduler.equalsIgnoreCase("virtual")) {
+            try {
+                // Looked up reflectively: the project targets Java 18 (see .idea/misc.xml), whose API has no virtual threads
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                System.out.println("Using virtual-thread scheduler, max concurrent requests: " + requestPermits.availablePermits());
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Virtual threads are not available on this JVM, falling back to " + SCRAPER_THREADS + " threads");
+            }
+        }
+        return Executors.newFixedThreadPool(SCRAPER_THREADS);
+    }
+
+    /**
+     * Runs a page request while holding one of the 'scraper.maxConcurrentRequests' permits.
+     *
+     * @param request The request to run.
+     * @param <T>     The type of the request's result.
+     * @return The result of the request.
+     */
+    private static <T> T withRequestPermit(Supplier<T> request) {
+        try {
+            requestPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a request permit", e);
+        }
+        try {
+            return request.get();
+        } finally {
+            requestPermits.release();
+        }
+    }
+
     /**
      * Retrieves a list of all provinces from the website.
      *
@@ -80,368 +293,726 @@ public class WeatherScrapingHourlyToStorage {
      * @return List of ProvinceInfo objects containing province names and URLs
      */
     public static List<ProvinceInfo> getAllProvinces(String regionName) {
-        List<ProvinceInfo> provinces = new ArrayList<>();
-        WebDriver driver = new ChromeDriver(createChromeOption());
+        return withRequestPermit(() -> getEngine().getAllProvinces(regionName));
+    }
 
-        try {
-            getWithRetry(driver, "https://thoitiet.vn", 3);
+    /**
+     * Retrieves a list of districts for a given province URL.
+     *
+     * @param provinceUrl URL of the province page
+     * @return List of DistrictInfo objects containing district names and URLs
+     */
+    public static List<DistrictInfo> getDistrictsOfProvince(String provinceUrl) {
+        return withRequestPermit(() -> getEngine().getDistrictsOfProvince(provinceUrl));
+    }
 
-            List<WebElement> provinceElements;
+    /**
+     * Retrieves air quality data from a given URL.
+     *
+     * @param url        URL to scrape for air quality data
+     * @param maxRetries Maximum number of retries for scraping
+     * @return Air quality as a string, or a default unknown value if not found
+     */
+    private static String getAirQuality(String url, int maxRetries) {
+        return withRequestPermit(() -> getEngine().getAirQuality(url, maxRetries));
+    }
 
-            if (regionName == null || regionName.isEmpty()) {
-                // If regionName is null or empty, get all provinces
-                provinceElements = driver.findElements(By.cssSelector(".dropdown-menu .mega-submenu a"));
-            } else {
-                // Find the div that contains the given region name
-                WebElement regionDiv = driver.findElement(By.xpath("//h6[text()='" + regionName + "']/ancestor::div[contains(@class, 'col-megamenu')]"));
-                // Find all province elements within this div
-                provinceElements = regionDiv.findElements(By.cssSelector("ul.mega-submenu a"));
-            }
+    /**
+     * Scrapes the hourly weather data and air quality of one province or district in a single attempt.
+     * With 'scraper.combinedExtraction' enabled (default) the location costs a single page load: the air quality is read
+     * from the hourly page when it carries it, and a page whose forecast is unchanged since an earlier run reuses its recorded
+     * rows. Otherwise the main page is loaded for the air quality and the hourly page for the forecast. Failed attempts are retried by the caller through the {@link LocationDispatcher}.
+     *
+     * @param url       URL of the location's main page
+     * @param hourlyUrl URL of the location's hourly weather page
+     * @param province  Name of the province
+     * @param district  Name of the district, or an empty string for the province itself
+     * @return List of HourlyWeatherInfo objects containing weather data
+     * @throws RuntimeException If the hourly page cannot be loaded or does not contain the expected data.
+     */
+    private static List<HourlyWeatherInfo> scrapeLocation(String url, String hourlyUrl, String province, String district) {
+        ScrapeEngine scrapeEngine = getEngine();
+        if (COMBINED_EXTRACTION) {
+            return withRequestPermit(() -> scrapeEngine.scrapeLocation(url, hourlyUrl, province, district, fingerprints));
+        }
+
+        String airQuality = getAirQuality(url, 3);
+        return withRequestPermit(() -> scrapeEngine.scrapeHourlyWeatherData3Days(hourlyUrl, province, district, airQuality));
+    }
 
-            for (WebElement provinceElement : provinceElements) {
-                String provinceName = provinceElement.getAttribute("title");
-                String provinceUrl = provinceElement.getAttribute("href");
-                provinces.add(new ProvinceInfo(provinceName, provinceUrl));
+    /**
+     * Initiates the process of scraping weather data for the specified region and then saves it to a CSV file.
+     * The locations are scraped by {@link #scrapeToPartFile}; once every location is done the partial file is renamed
+     * to its final name and recorded in the control database. If a recent run of the same region failed, its '.part' file
+     * is resumed and the locations it already holds are skipped.
+     *
+     * @param regionName    The name of the region for which to scrape weather data. It determines the scope of data collection.
+     * @param directoryPath The file path of the directory where the CSV file will be saved.
+     */
+    public static void scrapeAndSaveToCsv(String regionName, String directoryPath) {
+        // Look up the host address while the control database is checked
+        HostIdentity.resolveAsync();
+        if (CONTROL_ENABLED && isNotReadyToRun()) return;
+
+        int dataFileId = CONTROL_ENABLED ? insertToControlStartProcess() : -1;
+
+        long startTime = System.currentTimeMillis();
+        CsvStreamWriter csvWriter = null;
+        try {
+            String slug = LocationCatalog.slugOf(regionName);
+            fingerprints = FINGERPRINTS_ENABLED ? FingerprintStore.load(CATALOG_DIRECTORY.resolve("fingerprints-" + slug + ".tsv")) : null;
+            csvWriter = scrapeToPartFile(regionName, location -> true, Paths.get(directoryPath, "scrape-" + slug + ".csv.part"));
+
+            // Finalization of the scraping process
+            finalizeScraping(csvWriter, startTime, dataFileId, directoryPath);
+        } catch (Exception e) {
+            System.err.println("Error occurred during scraping: " + e.getMessage());
+            if (csvWriter != null) {
+                csvWriter.abort();
+            }
+            if (CONTROL_ENABLED) {
+                updateDataFilesStatusToEF(dataFileId, e.getMessage());
             }
         } finally {
-            driver.quit();
+            shutdownEngine();
+            saveFingerprints();
         }
 
-        return provinces;
     }
 
-
     /**
-     * Attempts to load a page with a given URL, retrying up to a specified number of times.
-     * This method is used to handle intermittent network or server issues by retrying the page load.
+     * Scrapes the selected locations of a region into a partial CSV file.
+     * The crawl runs as a pipeline: while provinces and their districts are being discovered, the locations found so far
+     * are passed through a bounded queue to the workers, which scrape them concurrently.
+     * The rows of each location are streamed to the '.part' file as soon as they are scraped. A '.part' file left by a
+     * failed run is resumed when it is recent enough.
      *
-     * @param driver     The WebDriver instance used to load the page.
-     * @param url        The URL to be loaded.
-     * @param maxRetries The maximum number of retry attempts.
-     * @return true if the page is successfully loaded, false otherwise.
+     * @param regionName The name of the region whose locations are scraped.
+     * @param selection  Chooses the locations to scrape; the catalog saved for the region always holds all of its locations.
+     * @param partFile   The partial CSV file to write.
+     * @return The finished writer holding the scraped rows, with its final row count; the caller completes or aborts it.
+     * @throws IOException          If the partial file cannot be opened.
+     * @throws InterruptedException If the thread is interrupted while waiting for the workers.
+     * @throws ExecutionException   If discovering the locations failed; the partial file is kept for a later resume.
      */
-    private static boolean getWithRetry(WebDriver driver, String url, int maxRetries) {
-        for (int attempt = 0; attempt < maxRetries; attempt++) {
+    private static CsvStreamWriter scrapeToPartFile(String regionName, Predicate<LocationTask> selection, Path partFile) throws IOException, InterruptedException, ExecutionException {
+        CsvStreamWriter csvWriter = new CsvStreamWriter(partFile, getIPAddress(), WRITER_QUEUE_CAPACITY, canResume(partFile));
+        ExecutorService executorService = createExecutorService();
+        try {
+            AtomicInteger completedUrls = new AtomicInteger(0);
+            BlockingQueue<LocationTask> locationQueue = new ArrayBlockingQueue<>(LOCATION_QUEUE_CAPACITY);
+            LocationDispatcher dispatcher = new LocationDispatcher(locationQueue, RETRY_POLICY);
+            LocationCatalog catalog = loadFreshCatalog(regionName);
+            if (catalog != null) {
+                TOTAL_URL = 2 * (int) catalog.getLocations().stream().filter(selection).count();
+            } else if (DongNamBo.equals(regionName)) {
+                TOTAL_URL = TOTAL_URL_DONG_NAM_BO;
+            }
+
+            // Start the workers first so that they pick up locations as soon as they are discovered.
+            // A fixed pool runs one queue-draining worker per thread; with virtual threads a single feeder starts
+            // one task per location instead, and only the request permits bound how many of them are loading pages
+            int workerCount;
+            if (executorService instanceof ThreadPoolExecutor) {
+                workerCount = SCRAPER_THREADS;
+                for (int i = 0; i < workerCount; i++) {
+                    executorService.submit(() -> scrapeLocationsFromQueue(locationQueue, dispatcher, csvWriter, completedUrls));
+                }
+            } else {
+                workerCount = 1;
+                executorService.submit(() -> submitTaskPerLocation(executorService, locationQueue, dispatcher, csvWriter, completedUrls));
+            }
+
+            Future<?> revalidation = null;
             try {
-                driver.get(url);
-                return true;
-            } catch (Exception e) {
-                System.err.println("Error accessing URL: " + url + ". Retry attempt " + (attempt + 1));
+                if (catalog != null) {
+                    // Start straight from the cached locations; refresh the catalog in the background if it is getting old
+                    if (!catalog.isYoungerThan(CATALOG_REVALIDATE_AFTER)) {
+                        revalidation = revalidateCatalogInBackground(catalog);
+                    }
+                    for (LocationTask location : catalog.getLocations()) {
+                        if (selection.test(location)) {
+                            dispatcher.dispatch(location);
+                        }
+                    }
+                } else {
+                    discoverAndSaveCatalog(regionName, dispatcher, selection, LocationCatalog.load(CATALOG_DIRECTORY, regionName));
+                }
+            } finally {
+                // Close the queue only once every location, including its retries, has finished
                 try {
-                    Thread.sleep(10000); // Wait for 10 seconds before retrying
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
+                    dispatcher.awaitIdle();
+                } finally {
+                    dispatcher.shutdown();
+                    for (int i = 0; i < workerCount; i++) {
+                        locationQueue.put(END_OF_LOCATIONS);
+                    }
+                }
+            }
+
+            if (revalidation != null) {
+                try {
+                    revalidation.get();
+                } catch (ExecutionException e) {
+                    System.err.println("Catalog revalidation failed: " + e.getCause().getMessage());
                 }
             }
+
+            executorService.shutdown();
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            System.out.println("Total URLs completed: " + completedUrls.get());
+            System.out.println("Total data collected: " + csvWriter.finish());
+            return csvWriter;
+        } catch (InterruptedException | ExecutionException | RuntimeException e) {
+            csvWriter.abort();
+            throw e;
+        } finally {
+            executorService.shutdown();
         }
-        return false;
     }
 
     /**
-     * Retrieves a list of districts for a given province URL.
+     * Runs the scraping as one worker of a sharded run, see 'scraper.shards.mode'.
+     * The shards of the run are registered in the 'shard_leases' table of the control database, where every process of
+     * the run (on this machine or another one) claims them one at a time. Each shard is scraped into its own CSV file;
+     * the lease is renewed while the shard is being scraped, and a shard whose process died is taken over by another one
+     * once its lease has expired. The process completing the last shard writes the run manifest, listing the file of every
+     * shard, and records it as the result of the scraping process for the loader.
+     * With several machines, the directory must be on storage that they and the loader share.
      *
-     * @param provinceUrl URL of the province page
-     * @return List of DistrictInfo objects containing district names and URLs
+     * @param directoryPath The file path of the directory where the CSV files and the manifest will be saved.
      */
-    public static List<DistrictInfo> getDistrictsOfProvince(String provinceUrl) {
-        List<DistrictInfo> districts = new ArrayList<>();
-        WebDriver driver = new ChromeDriver(createChromeOption());
+    public static void scrapeShardsToCsv(String directoryPath) {
+        // Look up the host address while the control database is checked
+        HostIdentity.resolveAsync();
+        List<String> shardKeys = shardKeys();
+        if (shardKeys.isEmpty()) {
+            System.err.println("No shards to scrape, check 'scraper.shards.regions'");
+            return;
+        }
+        String runPeriod = HOURLY_RUNS ? currentHour().toLocalDateTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH")) : LocalDate.now().toString();
+        String runCode = runPeriod + "_" + SHARD_MODE.toLowerCase() + "-" + shardKeys.size();
+        String owner = getIPAddress() + "/" + ProcessHandle.current().pid();
+        if (!createShardLeases(runCode, shardKeys)) {
+            return;
+        }
 
         try {
-            getWithRetry(driver, provinceUrl, 3);
-
-            List<WebElement> districtElements = driver.findElements(By.cssSelector(".khu-vuc-lan-can a"));
+            String shardKey;
+            while ((shardKey = claimShard(runCode, owner)) != null) {
+                System.out.println("Claimed shard " + shardKey + " of run " + runCode);
+                scrapeShard(runCode, shardKey, owner, directoryPath);
+            }
+            System.out.println("No shard of run " + runCode + " left to claim");
+            writeRunManifestIfComplete(runCode, owner, directoryPath);
+        } finally {
+            shutdownEngine();
+        }
+    }
 
-            for (WebElement districtElement : districtElements) {
-                String districtName = districtElement.getText();
-                String districtUrl = districtElement.getAttribute("href");
-                districts.add(new DistrictInfo(districtName, districtUrl));
+    /**
+     * Scrapes one claimed shard into its own CSV file and marks it as done, or gives it back if scraping failed.
+     *
+     * @param runCode       The code identifying the run.
+     * @param shardKey      The key of the claimed shard.
+     * @param owner         The identity of this process.
+     * @param directoryPath The file path of the directory where the CSV file will be saved.
+     */
+    private static void scrapeShard(String runCode, String shardKey, String owner, String directoryPath) {
+        long startTime = System.currentTimeMillis();
+        String slug = LocationCatalog.slugOf(shardKey);
+        ShardLeaseRenewal leaseRenewal = new ShardLeaseRenewal(runCode, shardKey, owner, SHARD_LEASE);
+        CsvStreamWriter csvWriter = null;
+        try {
+            fingerprints = FINGERPRINTS_ENABLED ? FingerprintStore.load(CATALOG_DIRECTORY.resolve("fingerprints-" + slug + ".tsv")) : null;
+            Path partFile = Paths.get(directoryPath, "scrape-" + LocationCatalog.slugOf(runCode) + "-" + slug + ".csv.part");
+            csvWriter = scrapeToPartFile(shardRegionOf(shardKey), shardSelectionOf(shardKey), partFile);
+            // Wait for a renewal in progress, so the lease is not touched while the shard is completed
+            leaseRenewal.close();
+
+            int rowCount = csvWriter.finish();
+            String fileName = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm")) + "_" + slug + "_" + rowCount + ".csv";
+            String absolutePath = directoryPath + File.separator + fileName;
+            csvWriter.complete(Paths.get(absolutePath));
+            boolean completed;
+            try {
+                completed = completeShard(runCode, shardKey, owner, absolutePath, rowCount);
+            } catch (SQLException e) {
+                // The lease runs out and the shard is scraped again; keep the file, it may still be recorded by hand
+                System.err.println("Could not record shard " + shardKey + ", keeping " + fileName + ": " + e.getMessage());
+                return;
             }
+            if (!completed) {
+                // Another process has taken the shard over and will record its own file
+                System.err.println("Lease of shard " + shardKey + " was lost, discarding " + fileName);
+                Files.deleteIfExists(Paths.get(absolutePath));
+                return;
+            }
+            System.out.println("Success save shard " + shardKey + " to " + fileName + " (" + rowCount + " rows) in " + (System.currentTimeMillis() - startTime) + " ms");
+        } catch (Exception e) {
+            System.err.println("Error occurred while scraping shard " + shardKey + ": " + e.getMessage());
+            if (csvWriter != null) {
+                csvWriter.abort();
+            }
+            leaseRenewal.close();
+            releaseShard(runCode, shardKey, owner, e.getMessage());
         } finally {
-            driver.quit();
+            leaseRenewal.close();
+            saveFingerprints();
         }
+    }
 
-        return districts;
+    /**
+     * Lists the shards of a run according to 'scraper.shards.mode'.
+     *
+     * @return The keys of the shards: region names, or "hash-i-of-n" buckets.
+     */
+    private static List<String> shardKeys() {
+        List<String> shardKeys = new ArrayList<>();
+        if (SHARD_MODE.equalsIgnoreCase("region")) {
+            for (String region : AppConfig.getString("scraper.shards.regions", "").split(",")) {
+                if (!region.isBlank()) {
+                    shardKeys.add(region.trim());
+                }
+            }
+        } else {
+            for (int i = 0; i < SHARD_COUNT; i++) {
+                shardKeys.add("hash-" + i + "-of-" + SHARD_COUNT);
+            }
+        }
+        return shardKeys;
     }
 
+    /**
+     * Returns the region whose catalog holds the locations of a shard.
+     *
+     * @param shardKey The key of the shard.
+     * @return The region name of a region shard, or {@link #All} for a hash shard.
+     */
+    private static String shardRegionOf(String shardKey) {
+        return SHARD_MODE.equalsIgnoreCase("region") ? shardKey : All;
+    }
 
     /**
-     * Safely gets text from a WebElement, returns a default value if not found.
+     * Returns the selection of the locations belonging to a shard.
+     * Hash shards take the locations whose hourly URL hashes to their bucket; String.hashCode is the same in every JVM,
+     * so all processes of a run agree on the split.
      *
-     * @param detail       WebElement to search within
-     * @param selector     By selector to find the desired element
-     * @param defaultValue Default value to return if element is not found
-     * @return String value of the element or default value
+     * @param shardKey The key of the shard.
+     * @return The selection of the shard's locations.
      */
-    private static String safelyGetText(WebElement detail, By selector, String defaultValue) {
-        try {
-            return detail.findElement(selector).getText();
-        } catch (NoSuchElementException e) {
-            return defaultValue;
+    private static Predicate<LocationTask> shardSelectionOf(String shardKey) {
+        if (SHARD_MODE.equalsIgnoreCase("region")) {
+            return location -> true;
         }
+        String[] parts = shardKey.split("-");
+        int bucket = Integer.parseInt(parts[1]);
+        int bucketCount = Integer.parseInt(parts[3]);
+        return location -> Math.floorMod(location.getHourlyUrl().hashCode(), bucketCount) == bucket;
     }
 
     /**
-     * Safely gets text from the WebDriver, returns a default value if not found.
+     * Registers the shards of a run in the control database.
      *
-     * @param driver       WebDriver instance to use for scraping
-     * @param selector     By selector to find the desired element
-     * @param defaultValue Default value to return if element is not found
-     * @return String value of the element or default value
+     * @param runCode   The code identifying the run.
+     * @param shardKeys The keys of the shards.
+     * @return true if the run may go on, false if the scraping process already succeeded today or the database is unavailable.
      */
-    private static String safelyGetText(WebDriver driver, By selector, String defaultValue) {
-        try {
-            return driver.findElement(selector).getText();
-        } catch (NoSuchElementException e) {
-            return defaultValue;
+    private static boolean createShardLeases(String runCode, List<String> shardKeys) {
+        try (ControlDatabaseManager dbManager = new ControlDatabaseManager("control")) {
+            if (HOURLY_RUNS ? dbManager.hasSuccessfulProcessSince(nameProcess, currentHour()) : dbManager.hasSuccessfulProcessToday(nameProcess)) {
+                System.out.println("Scraping process is not ready to run. A successful process was completed " + (HOURLY_RUNS ? "this hour." : "today."));
+                return false;
+            }
+            dbManager.createShardLeases(runCode, shardKeys);
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
         }
     }
 
     /**
-     * Retrieves air quality data from a given URL.
+     * Claims the next shard of a run for this process.
      *
-     * @param url        URL to scrape for air quality data
-     * @param maxRetries Maximum number of retries for scraping
-     * @return Air quality as a string, or a default unknown value if not found
-     * @throws NoSuchElementException if the air quality information element is not found in the page
+     * @param runCode The code identifying the run.
+     * @param owner   The identity of this process.
+     * @return The key of the claimed shard, or null if none is left or the database is unavailable.
      */
-    private static String getAirQuality(String url, int maxRetries) {
-        WebDriver driver = new ChromeDriver(createChromeOption());
-        try {
-            getWithRetry(driver, url, maxRetries);
-            try {
-                WebElement airQualityElement = driver.findElement(By.cssSelector(".air-rules .air-active"));
-                return airQualityElement.getText().trim();
-            } catch (NoSuchElementException e) {
-                System.err.println("Air quality information not found.");
-                return "Không rõ";
+    private static String claimShard(String runCode, String owner) {
+        try (ControlDatabaseManager dbManager = new ControlDatabaseManager("control")) {
+            int failedShards = dbManager.failExhaustedShards(runCode, SHARD_MAX_ATTEMPTS);
+            if (failedShards > 0) {
+                System.err.println(failedShards + " shards of run " + runCode + " failed " + SHARD_MAX_ATTEMPTS + " attempts and are given up");
             }
-        } finally {
-            driver.quit();
+            String shardKey = dbManager.claimShardLease(runCode, owner, SHARD_LEASE.toSeconds(), SHARD_MAX_ATTEMPTS);
+            return shardKey;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
         }
     }
 
+    /**
+     * Records a shard as done in the control database.
+     *
+     * @param runCode      The code identifying the run.
+     * @param shardKey     The key of the shard.
+     * @param owner        The identity of this process.
+     * @param absolutePath The absolute path of the shard's file.
+     * @param rowCount     The number of rows in the file.
+     * @return true if the shard was recorded, false if the lease was lost to another process.
+     * @throws SQLException If the database is unavailable; the shard may then still be held by this process.
+     */
+    private static boolean completeShard(String runCode, String shardKey, String owner, String absolutePath, long rowCount) throws SQLException {
+        try (ControlDatabaseManager dbManager = new ControlDatabaseManager("control")) {
+            return dbManager.completeShardLease(runCode, shardKey, owner, absolutePath, rowCount);
+        }
+    }
+
+    /**
+     * Gives a failed shard back so that it can be claimed again, up to 'scraper.shards.maxAttempts' times.
+     *
+     * @param runCode      The code identifying the run.
+     * @param shardKey     The key of the shard.
+     * @param owner        The identity of this process.
+     * @param errorMessage The reason the shard failed.
+     */
+    private static void releaseShard(String runCode, String shardKey, String owner, String errorMessage) {
+        try (ControlDatabaseManager dbManager = new ControlDatabaseManager("control")) {
+            dbManager.releaseShardLease(runCode, shardKey, owner, errorMessage);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
 
     /**
-     * Creates and configures ChromeOptions for the WebDriver.
-     * This method sets various properties and arguments for the ChromeDriver,
-     * such as headless mode and disabling images for better performance.
+     * Writes the manifest of a run if all of its shards are done and no other process has written it.
+     * If a shard has failed 'scraper.shards.maxAttempts' times instead, the run is recorded as a failed scraping process
+     * ('EF'), so the loader does not take the previous day's file for today's.
+     * The manifest lists the absolute path of every shard file, one per line, and is recorded in the control database
+     * like the CSV file of an unsharded run, so the loader finds it through the latest successful scraping process.
      *
-     * @return Configured ChromeOptions object.
+     * @param runCode       The code identifying the run.
+     * @param owner         The identity of this process.
+     * @param directoryPath The file path of the directory where the manifest will be saved.
      */
-    private static ChromeOptions createChromeOption() {
-        ChromeOptions chromeOptions = new ChromeOptions();
-        chromeOptions.addArguments("--headless");
-        chromeOptions.addArguments("--no-sandbox");
-        chromeOptions.addArguments("--disable-dev-shm-usage");
-//		chromeOptions.addArguments("--disable-gpu"); // Disables GPU hardware acceleration
-        chromeOptions.addArguments("--disable-extensions"); // Disabling extensions
-        chromeOptions.addArguments("--disable-popup-blocking"); // Disabling popups
-        chromeOptions.addArguments("disable-infobars"); // Disabling infobars
-        chromeOptions.addArguments("--disable-images"); // Disable images
-        chromeOptions.addArguments("--blink-settings=imagesEnabled=false"); // More aggressive image disabling
-        // Add any additional arguments that are relevant to your use case
+    private static void writeRunManifestIfComplete(String runCode, String owner, String directoryPath) {
+        try {
+            List<String> destinations;
+            long rowCount;
+            try (ControlDatabaseManager dbManager = new ControlDatabaseManager("control")) {
+                String claim = dbManager.claimRunManifest(runCode, owner, SHARD_LEASE.toSeconds());
+                if ("EF".equals(claim)) {
+                    String errorMessage = "Sharded run " + runCode + " failed: " + String.join("; ", dbManager.getFailedShards(runCode));
+                    System.err.println(errorMessage);
+                    updateDataFilesStatusToEF(insertToControlStartProcess(), errorMessage);
+                    return;
+                }
+                if (claim == null) {
+                    System.out.println("Run " + runCode + " is not complete yet, or its manifest is written by another process");
+                    return;
+                }
+                destinations = dbManager.getShardDestinations(runCode);
+                rowCount = dbManager.getShardRowCount(runCode);
+            }
 
-        // Optional: Set timeouts for script and page load, if needed
-        // driver.manage().timeouts().pageLoadTimeout(40, TimeUnit.SECONDS);
-        // driver.manage().timeouts().setScriptTimeout(60, TimeUnit.SECONDS);
+            LocalDateTime now = LocalDateTime.now();
+            String fileName = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm")) + "_" + rowCount + ".manifest";
+            String absolutePath = directoryPath + File.separator + fileName;
+            Files.write(Paths.get(absolutePath), destinations, StandardCharsets.UTF_8);
+            System.out.println("Success save manifest of run " + runCode + " to " + fileName + ": " + destinations.size() + " files, " + rowCount + " rows");
 
-        return chromeOptions;
+            int dataFileId = insertToControlStartProcess();
+            insertToControlSuccessProcess(fileName, absolutePath, dataFileId, (int) rowCount, now);
+            completeShard(runCode, ControlDatabaseManager.MANIFEST_SHARD_KEY, owner, absolutePath, rowCount);
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
-     * Scrapes hourly weather data for the next 3 days from a given URL.
-     * The method parses the web page to extract relevant weather data like temperature,
-     * humidity, wind speed, etc., and returns a list of HourlyWeatherInfo objects.
+     * Discovers the provinces of a region and their districts, putting each location into the queue as soon as it is found.
+     * Provinces are listed on the calling thread; the districts of each province are then discovered concurrently on
+     * 'scraper.discoveryThreads' threads. The method blocks while the location queue is full, so discovery never runs far ahead of the workers.
      *
-     * @param driver     The WebDriver instance used for scraping.
-     * @param url        The URL of the weather data page.
-     * @param province   The name of the province for which the data is being scraped.
-     * @param district   The name of the district for which the data is being scraped.
-     * @param airQuality The air quality information.
-     * @return A list of HourlyWeatherInfo objects containing the scraped weather data.
+     * @param regionName      The name of the region for which to discover locations.
+     * @param dispatcher      The dispatcher feeding the scraping workers, or null to only collect the locations.
+     * @param selection       Chooses the locations handed to the dispatcher; all locations are returned either way.
+     * @param failedProvinces Receives the names of the provinces whose districts could not be listed; such a province
+     *                        is returned and dispatched without its districts.
+     * @return All discovered locations, provinces in menu order each followed by its districts.
+     * @throws InterruptedException If the thread is interrupted while waiting for discovery to finish.
+     * @throws ExecutionException   If discovering the districts of a province failed unexpectedly.
      */
-    public static List<HourlyWeatherInfo> scrapeHourlyWeatherData3Days(WebDriver driver, String url, String province, String district, String airQuality) {
-        List<HourlyWeatherInfo> hourlyData = new ArrayList<>();
-        getWithRetry(driver, url, 3);
-        List<WebElement> weatherDetails = driver.findElements(By.cssSelector("details.weather-day"));
-
-        String dewPointSelector = ".weather-detail .d-flex:has(.avatar-img svg[name='dewpoint']) .ml-auto > h3";
-        WebElement dewPointElement = driver.findElement(By.cssSelector(dewPointSelector));
-        String dewPoint = dewPointElement.getText().trim();
+    private static List<LocationTask> discoverLocations(String regionName, LocationDispatcher dispatcher, Predicate<LocationTask> selection,
+                                                        List<String> failedProvinces) throws InterruptedException, ExecutionException {
+        List<ProvinceInfo> provinces = getAllProvinces(regionName);
+        if (provinces.isEmpty()) {
+            throw new IllegalStateException("No provinces listed for region '" + regionName + "'");
+        }
 
-        LocalDate currentDate = LocalDate.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d/M");
+        ExecutorService discoveryService = Executors.newFixedThreadPool(DISCOVERY_THREADS);
+        try {
+            List<Future<List<LocationTask>>> discoveries = new ArrayList<>();
+            for (ProvinceInfo province : provinces) {
+                discoveries.add(discoveryService.submit(() -> {
+                    List<LocationTask> provinceLocations = new ArrayList<>();
+                    provinceLocations.add(LocationTask.of(province));
+                    if (dispatcher != null && selection.test(LocationTask.of(province))) {
+                        dispatcher.dispatch(LocationTask.of(province));
+                    }
 
-        for (WebElement detail : weatherDetails) {
-            detail.click();
-            HourlyWeatherInfo info = new HourlyWeatherInfo();
+                    List<DistrictInfo> districts;
+                    try {
+                        districts = getDistrictsOfProvince(province.getUrl());
+                    } catch (RuntimeException e) {
+                        System.err.println("Unable to list the districts of " + province.getName() + ": " + e.getMessage());
+                        failedProvinces.add(province.getName());
+                        return provinceLocations;
+                    }
 
-            // Determine if it should be a new date
-            String timeString = safelyGetText(detail, By.cssSelector(".summary-day span"), "Không rõ thời gian").trim();
-            if (timeString.contains("/")) {
-                currentDate = currentDate.plusDays(1);
+                    // Process districts within each province
+                    for (DistrictInfo district : districts) {
+                        provinceLocations.add(LocationTask.of(province, district));
+                        if (dispatcher != null && selection.test(LocationTask.of(province, district))) {
+                            dispatcher.dispatch(LocationTask.of(province, district));
+                        }
+                    }
+                    return provinceLocations;
+                }));
+            }
+            List<LocationTask> locations = new ArrayList<>();
+            for (Future<List<LocationTask>> discovery : discoveries) {
+                locations.addAll(discovery.get());
             }
+            return locations;
+        } finally {
+            discoveryService.shutdownNow();
+        }
+    }
 
-            String time = timeString.contains("/") ? "00:00" : timeString;
-            info.setTime(time);
-            info.setDate(currentDate.toString());
+    /**
+     * Discovers the locations of a region, see {@link #discoverLocations}, and saves them as the catalog of the region
+     * unless the discovery may have missed some.
+     * A discovery in which the districts of a province could not be listed is never saved, so the next run discovers
+     * again instead of skipping the province's districts until the catalog expires. A discovery finding fewer locations
+     * than the previous catalog is only saved if a second discovery finds the same locations, since a province page
+     * served without its district list would otherwise shrink the catalog for a whole TTL.
+     *
+     * @param regionName The name of the region for which to discover locations.
+     * @param dispatcher The dispatcher feeding the scraping workers, or null to only collect the locations.
+     * @param selection  Chooses the locations handed to the dispatcher.
+     * @param previous   The catalog saved for the region, whatever its age, or null if there is none.
+     * @return All discovered locations, complete or not.
+     * @throws InterruptedException If the thread is interrupted while waiting for discovery to finish.
+     * @throws ExecutionException   If discovering the districts of a province failed unexpectedly.
+     */
+    private static List<LocationTask> discoverAndSaveCatalog(String regionName, LocationDispatcher dispatcher, Predicate<LocationTask> selection,
+                                                             LocationCatalog previous) throws InterruptedException, ExecutionException {
+        List<String> failedProvinces = Collections.synchronizedList(new ArrayList<>());
+        List<LocationTask> locations = discoverLocations(regionName, dispatcher, selection, failedProvinces);
+        if (!failedProvinces.isEmpty()) {
+            System.err.println("Location catalog not saved: the districts of " + failedProvinces.size() + " provinces could not be listed " + failedProvinces);
+            return locations;
+        }
 
-            info.setTemperatureMin(safelyGetText(detail, By.cssSelector(".summary-temperature-min"), "Không rõ nhiệt độ thấp nhất"));
-            info.setTemperatureMax(safelyGetText(detail, By.cssSelector(".summary-temperature-max-value"), "Không rõ nhiệt độ cao nhất"));
-            info.setDescription(safelyGetText(detail, By.cssSelector(".summary-description-detail"), "Không rõ mô tả"));
-            info.setHumidity(safelyGetText(detail, By.cssSelector(".summary-humidity > span:last-child"), "Không có dữ liệu Độ ẩm"));
-            info.setWindSpeed(safelyGetText(detail, By.cssSelector(".summary-speed > span:last-child"), "Không có dữ liệu Tốc độ gió"));
-            info.setUvIndex(safelyGetText(detail, By.cssSelector(".weather-content-item .op-8.fw-bold"), "Không có dữ liệu UV"));
-            info.setVisibility(safelyGetText(detail, By.xpath(".//h6[contains(text(), 'Tầm nhìn')]/following-sibling::div/span"), "Không có dữ liệu Tầm nhìn"));
-            info.setPressure(safelyGetText(detail, By.xpath(".//h6[contains(text(), 'Áp suất')]/following-sibling::div/h3"), "Không có dữ liệu Áp suất"));
-            info.setStopPoint(dewPoint);
-            info.setUrl(url);
-            info.setProvince(province);
-            info.setDistrict(district);
-            info.setAirQuality(airQuality);
+        LocationCatalog discovered = new LocationCatalog(regionName, System.currentTimeMillis(), locations);
+        if (previous != null && locations.size() < previous.getLocations().size()) {
+            List<String> confirmationFailures = Collections.synchronizedList(new ArrayList<>());
+            LocationCatalog confirmation = new LocationCatalog(regionName, discovered.getDiscoveredAt(),
+                    discoverLocations(regionName, null, location -> true, confirmationFailures));
+            if (!confirmationFailures.isEmpty() || !confirmation.hasSameLocations(discovered)) {
+                System.err.println("Location catalog not saved: " + locations.size() + " locations found instead of "
+                        + previous.getLocations().size() + ", and a second discovery did not confirm it");
+                return locations;
+            }
+        }
+        if (previous != null && !discovered.hasSameLocations(previous)) {
+            System.out.println("Location catalog changed: " + previous.getLocations().size() + " -> " + locations.size() + " locations");
+        }
+        saveCatalog(discovered);
+        return locations;
+    }
 
-            hourlyData.add(info);
+    /**
+     * Loads the cached catalog of a region if it is younger than 'scraper.catalog.ttlHours'.
+     *
+     * @param regionName The name of the region.
+     * @return The cached catalog, or null if the locations must be discovered.
+     */
+    private static LocationCatalog loadFreshCatalog(String regionName) {
+        LocationCatalog catalog = LocationCatalog.load(CATALOG_DIRECTORY, regionName);
+        if (catalog == null || !catalog.isYoungerThan(CATALOG_TTL)) {
+            System.out.println("No fresh location catalog for region '" + regionName + "', discovering locations");
+            return null;
         }
-        return hourlyData;
+        System.out.println("Using cached location catalog: " + catalog.getLocations().size() + " locations, " + catalog.getUrlCount() + " URLs");
+        return catalog;
     }
 
     /**
-     * Saves the collected weather data to a CSV file.
-     * The method checks if the specified directory exists, creates it if necessary,
-     * and then writes the weather data in CSV format to the specified file path.
+     * Writes a catalog to the catalog directory, logging instead of failing the run if it cannot be written.
      *
-     * @param weatherData The list of HourlyWeatherInfo objects to be saved.
-     * @param filePath    The path of the CSV file where the data will be saved.
+     * @param catalog The catalog to save.
      */
-    public static void saveToCSV(List<HourlyWeatherInfo> weatherData, String filePath) {
+    private static void saveCatalog(LocationCatalog catalog) {
         try {
-            // Check if the directory exists, create it if it doesn't
-            File file = new File(filePath);
-            File directory = new File(file.getParent());
-            if (!directory.exists()) {
-                directory.mkdirs(); // This will create parent directories if they don't exist
-            }
-
-            try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(file),
-                    StandardCharsets.UTF_8)) {
-                writer.write('\ufeff');
-                writer.append(
-                        "Province,District,Date,Time,TemperatureMin,TemperatureMax,Description,Humidity,WindSpeed,UVIndex,Visibility,Pressure,StopPoint,AirQuality,URL,IP\n");
-
-                String ipAddress = getIPAddress();
-                for (HourlyWeatherInfo info : weatherData) {
-                    writer.append(info.getProvince()).append(",").append(info.getDistrict()).append(",")
-                            .append(info.getDate()).append(",").append(info.getTime()).append(",")
-                            .append(info.getTemperatureMin()).append(",").append(info.getTemperatureMax()).append(",")
-                            .append(info.getDescription()).append(",").append(info.getHumidity()).append(",")
-                            .append(info.getWindSpeed()).append(",").append(info.getUvIndex()).append(",")
-                            .append(info.getVisibility()).append(",").append(info.getPressure()).append(",")
-                            .append(info.getStopPoint()).append(",").append(info.getAirQuality()).append(",")
-                            .append(info.getUrl()).append(",").append(ipAddress).append("\n");
-                }
-            }
+            catalog.save(CATALOG_DIRECTORY);
+            System.out.println("Location catalog saved: " + catalog.getLocations().size() + " locations");
         } catch (IOException e) {
-            System.err.println("Error while writing to CSV file: " + e.getMessage());
+            System.err.println("Unable to save location catalog: " + e.getMessage());
         }
     }
 
     /**
-     * Attempts to scrape weather data with retries on failure.
+     * Rediscovers the locations of a cached catalog on a background thread and saves the result, see {@link #discoverAndSaveCatalog}.
+     * Only the province and district listing pages are loaded, so this is cheap compared with the run itself.
      *
-     * @param url        URL to scrape for weather data
-     * @param maxRetries Maximum number of retries for scraping
-     * @param province   Name of the province
-     * @param district   Name of the district
-     * @param airQuality Air quality information
-     * @return List of HourlyWeatherInfo objects containing weather data
+     * @param catalog The cached catalog to revalidate.
+     * @return A Future completing when the catalog has been refreshed.
      */
-    private static List<HourlyWeatherInfo> scrapeWithRetry(String url, int maxRetries, String province, String district, String airQuality) {
-        WebDriver driver = new ChromeDriver(createChromeOption());
+    private static Future<?> revalidateCatalogInBackground(LocationCatalog catalog) {
+        ExecutorService revalidationService = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalog-revalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
         try {
-            for (int attempt = 0; attempt < maxRetries; attempt++) {
-                try {
-                    return scrapeHourlyWeatherData3Days(driver, url, province, district, airQuality);
-                } catch (TimeoutException e) {
-                    System.err.println("Timeout khi thu thập dữ liệu từ URL: " + url + ". Thử lại lần " + (attempt + 1));
-                    System.err.println(e.getMessage());
-                } catch (Exception e) {
-                    System.err.println("Lỗi khác khi thu thập dữ liệu từ URL: " + url + ". Thử lại lần " + (attempt + 1));
-                    System.err.println(e.getMessage());
-                }
-                try {
-                    Thread.sleep(10000);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                }
-            }
+            return revalidationService.submit(() -> {
+                discoverAndSaveCatalog(catalog.getRegionName(), null, location -> true, catalog);
+                return null;
+            });
         } finally {
-            driver.quit();
+            revalidationService.shutdown();
         }
-        return new ArrayList<>();
     }
 
-
     /**
-     * Initiates the process of scraping weather data for the specified region and then saves it to a CSV file.
-     * This method manages the scraping tasks for each province and district within the region, handling them concurrently.
-     * It aggregates the scraped weather data and air quality information from multiple sources.
-     * After completing the scraping tasks, it compiles the data into a CSV file format and saves it.
+     * Checks whether a partial CSV file left by a failed run may be resumed.
      *
-     * @param regionName    The name of the region for which to scrape weather data. It determines the scope of data collection.
-     * @param directoryPath The file path of the directory where the CSV file will be saved.
+     * @param partFile The partial CSV file of the region.
+     * @return true if resuming is enabled and the file is younger than 'scraper.resume.maxAgeHours'.
      */
-    public static void scrapeAndSaveToCsv(String regionName, String directoryPath) {
-        if (isNotReadyToRun()) return;
-
-        int dataFileId = insertToControlStartProcess();
-
-        long startTime = System.currentTimeMillis();
+    private static boolean canResume(Path partFile) {
+        if (!RESUME || !Files.exists(partFile)) {
+            return false;
+        }
         try {
-            List<HourlyWeatherInfo> allWeatherData = new ArrayList<>();
-            ExecutorService executorService = Executors.newFixedThreadPool(2);
-            AtomicInteger completedUrls = new AtomicInteger(0);
-
-            List<ProvinceInfo> provinces = getAllProvinces(regionName);
-
-            for (ProvinceInfo province : provinces) {
-                // Submit separate tasks for each province
-                executorService.submit(() -> {
-                    String airQuality = getAirQuality(province.getUrl(), 3);
-                    System.out.println("Finished URL: " + completedUrls.incrementAndGet() + "/" + TOTAL_URL_DONG_NAM_BO);
-
-                    List<HourlyWeatherInfo> provinceWeatherData = scrapeWithRetry(province.getUrlHour(), 3, province.getName(), "", airQuality);
-                    synchronized (allWeatherData) {
-                        allWeatherData.addAll(provinceWeatherData);
-                    }
-                    System.out.println("Finished URL: " + completedUrls.incrementAndGet() + "/" + TOTAL_URL_DONG_NAM_BO);
-                });
+            long age = System.currentTimeMillis() - Files.getLastModifiedTime(partFile).toMillis();
+            if (age < RESUME_MAX_AGE.toMillis()) {
+                return true;
+            }
+            System.out.println("Partial file " + partFile + " is too old to resume, starting over");
+        } catch (IOException e) {
+            System.err.println("Unable to inspect partial file " + partFile + ": " + e.getMessage());
+        }
+        return false;
+    }
 
-                // Process districts within each province
-                List<DistrictInfo> districts = getDistrictsOfProvince(province.getUrl());
+    /**
+     * Writes the page fingerprints of the run to disk, so that the pages scraped so far count as known even if the run failed.
+     */
+    private static void saveFingerprints() {
+        if (fingerprints == null) {
+            return;
+        }
+        try {
+            fingerprints.save();
+            System.out.println(fingerprints);
+        } catch (IOException e) {
+            System.err.println("Unable to save page fingerprints: " + e.getMessage());
+        }
+        fingerprints = null;
+    }
 
-                for (DistrictInfo district : districts) {
-                    // Submit separate tasks for each district
-                    executorService.submit(() -> {
-                        String airQuality = getAirQuality(district.getUrl(), 3);
-                        System.out.println("Finished URL: " + completedUrls.incrementAndGet() + "/" + TOTAL_URL_DONG_NAM_BO);
+    /**
+     * Prints the scraping progress against the expected number of URLs of the run.
+     *
+     * @param completed The number of URLs processed so far.
+     */
+    private static void printProgress(int completed) {
+        System.out.println("Finished URL: " + completed + "/" + TOTAL_URL);
+    }
 
-                        List<HourlyWeatherInfo> districtWeatherData = scrapeWithRetry(district.getUrlHour(), 3, province.getName(), district.getName(), airQuality);
-                        synchronized (allWeatherData) {
-                            allWeatherData.addAll(districtWeatherData);
-                        }
-                        System.out.println("Finished URL: " + completedUrls.incrementAndGet() + "/" + TOTAL_URL_DONG_NAM_BO);
-                    });
-                }
+    /**
+     * Worker loop: takes locations from the queue and scrapes them until the end marker is taken.
+     * A failed location is handed back to the dispatcher for a delayed retry instead of blocking the worker.
+     *
+     * @param locationQueue The queue filled by the discovery stage.
+     * @param dispatcher    The dispatcher tracking outstanding locations and scheduling retries.
+     * @param csvWriter     The writer streaming the scraped rows to the CSV file.
+     * @param completedUrls A counter for the number of URLs processed.
+     */
+    private static void scrapeLocationsFromQueue(BlockingQueue<LocationTask> locationQueue, LocationDispatcher dispatcher, CsvStreamWriter csvWriter, AtomicInteger completedUrls) {
+        try {
+            LocationTask location;
+            while ((location = locationQueue.take()) != END_OF_LOCATIONS) {
+                scrapeQueuedLocation(location, dispatcher, csvWriter, completedUrls);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            // Finalization of the scraping process
-            finalizeScraping(executorService, allWeatherData, completedUrls, startTime, dataFileId, directoryPath);
-        } catch (Exception e) {
-            System.err.println("Error occurred during scraping: " + e.getMessage());
-            updateDataFilesStatusToEF(dataFileId, e.getMessage());
+    /**
+     * Takes the locations from the queue and submits a separate task for each of them, until the end marker is taken.
+     * Used with the virtual-thread scheduler, where a task per location is cheap; the number of pages loaded at the same
+     * time is bounded by the request permits rather than by the number of threads.
+     *
+     * @param executorService The executor running the location tasks.
+     * @param locationQueue   The queue of locations to scrape.
+     * @param dispatcher      The dispatcher tracking the outstanding locations and their retries.
+     * @param csvWriter       The writer receiving the scraped rows.
+     * @param completedUrls   The counter of completed URLs, for the progress display.
+     */
+    private static void submitTaskPerLocation(ExecutorService executorService, BlockingQueue<LocationTask> locationQueue, LocationDispatcher dispatcher, CsvStreamWriter csvWriter, AtomicInteger completedUrls) {
+        try {
+            LocationTask location;
+            while ((location = locationQueue.take()) != END_OF_LOCATIONS) {
+                LocationTask task = location;
+                executorService.submit(() -> scrapeQueuedLocation(task, dispatcher, csvWriter, completedUrls));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+    }
 
+    /**
+     * Scrapes one location taken from the queue and writes its rows. A failed location is handed back to the dispatcher
+     * to be retried later, or given up once it has used all its attempts.
+     *
+     * @param location      The location to scrape.
+     * @param dispatcher    The dispatcher tracking the outstanding locations and their retries.
+     * @param csvWriter     The writer receiving the scraped rows.
+     * @param completedUrls The counter of completed URLs, for the progress display.
+     */
+    private static void scrapeQueuedLocation(LocationTask location, LocationDispatcher dispatcher, CsvStreamWriter csvWriter, AtomicInteger completedUrls) {
+        boolean retrying = false;
+        try {
+            if (csvWriter.getCompletedLocations().contains(location.getHourlyUrl())) {
+                // Already written by the run being resumed
+                printProgress(completedUrls.addAndGet(2));
+                return;
+            }
+            List<HourlyWeatherInfo> weatherData = scrapeLocation(location.getUrl(), location.getHourlyUrl(), location.getProvince(), location.getDistrict());
+            csvWriter.write(location.getHourlyUrl(), weatherData);
+            printProgress(completedUrls.addAndGet(2));
+        } catch (RuntimeException e) {
+            // Keep the worker alive so that the queue is always drained
+            System.err.println("Error while scraping " + location + ": " + e.getMessage());
+            retrying = dispatcher.retryLater(location);
+            if (!retrying) {
+                System.err.println("Giving up on " + location + " after " + location.getAttempt() + " attempts");
+                printProgress(completedUrls.addAndGet(2));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!retrying) {
+                dispatcher.completed();
+            }
+        }
     }
 
     /**
@@ -451,32 +1022,41 @@ public class WeatherScrapingHourlyToStorage {
      * @param errorMessage The error message to log.
      */
     private static void updateDataFilesStatusToEF(int dataFileId, String errorMessage) {
-        try {
-            ControlDatabaseManager dbManager = new ControlDatabaseManager("control");
+        try (ControlDatabaseManager dbManager = new ControlDatabaseManager("control")) {
             Timestamp now = Timestamp.valueOf(LocalDateTime.now());
 
             // Update data_files status to 'EF' and update_at to now
             dbManager.updateDataFileStatus(dataFileId, "EF", errorMessage, now);
-
-            dbManager.closeConnection();
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Returns the start of the current hour, from which a run counts as this hour's with 'scraper.runEvery=hour'.
+     *
+     * @return The current time truncated to the hour.
+     */
+    private static Timestamp currentHour() {
+        return Timestamp.valueOf(LocalDateTime.now().truncatedTo(ChronoUnit.HOURS));
+    }
+
     /**
      * Checks if the scraping process is ready to run.
-     * This method ensures that there is no ongoing scraping process and that a successful process hasn't been completed already on the same day.
+     * This method ensures that there is no ongoing scraping process and that a successful process hasn't been completed already
+     * on the same day, or in the same hour with 'scraper.runEvery=hour'.
      * It queries the control database to determine the readiness of the process.
      *
-     * @return true if the scraping process can start, false otherwise.
+     * @return true if the scraping process cannot start, false otherwise.
      */
     private static boolean isNotReadyToRun() {
-        try {
-            ControlDatabaseManager dbManager = new ControlDatabaseManager("control");
-            if (!dbManager.isReadyToRun(nameProcess)) {
-                System.out.println("Scraping process is not ready to run. Either a process is ongoing or a successful process was completed today.");
-                dbManager.closeConnection();
+        try (ControlDatabaseManager dbManager = new ControlDatabaseManager("control")) {
+            boolean ready = HOURLY_RUNS
+                    ? !dbManager.isProcessOngoing(nameProcess) && !dbManager.hasSuccessfulProcessSince(nameProcess, currentHour())
+                    : dbManager.isReadyToRun(nameProcess);
+            if (!ready) {
+                System.out.println("Scraping process is not ready to run. Either a process is ongoing or a successful process was completed "
+                        + (HOURLY_RUNS ? "this hour." : "today."));
                 return true;
             }
         } catch (SQLException e) {
@@ -494,15 +1074,12 @@ public class WeatherScrapingHourlyToStorage {
      * @return The generated ID for the new data file record in the database, or -1 in case of an error.
      */
     public static int insertToControlStartProcess() {
-        try {
-            ControlDatabaseManager dbManager = new ControlDatabaseManager("control");
+        try (ControlDatabaseManager dbManager = new ControlDatabaseManager("control")) {
             Timestamp now = Timestamp.valueOf(LocalDateTime.now());
             Timestamp threeDaysLater = Timestamp.valueOf(LocalDateTime.now().plusDays(3));
 
             // Insert into data_files with status "SE"
             int fileId = dbManager.insertDataFile(nameProcess, 0, null, "SE", now, now, threeDaysLater, "Scraping process started", now, 1, 1, false, null);
-
-            dbManager.closeConnection();
             System.out.println("Scraping process started and insert to data_files success");
             return fileId;
         } catch (SQLException e) {
@@ -523,21 +1100,18 @@ public class WeatherScrapingHourlyToStorage {
      * @param scrapingTime The time at which the scraping was completed.
      */
     private static void insertToControlSuccessProcess(String fileName, String absolutePath, int dataFileId, int rowCount, LocalDateTime scrapingTime) {
-        try {
-            ControlDatabaseManager dbManager = new ControlDatabaseManager("control");
+        try (ControlDatabaseManager dbManager = new ControlDatabaseManager("control")) {
             Timestamp now = Timestamp.valueOf(scrapingTime);
             String code = convertFileNameToCode(fileName);
             // Insert into data_file_configs
             int configId = dbManager.insertDataFileConfig("WeatherDataScrapingConfig", code, "Configuration for scraping weather data"
-                    , "https://thoitiet.vn", "localhost", "CSV", ",", "Province,District,Date,Time,TemperatureMin,TemperatureMax,Description,Humidity,WindSpeed,UVIndex,Visibility,Pressure,StopPoint,AirQuality,URL,IP", absolutePath, now, 1, 1, "/backup_path");
+                    , "https://thoitiet.vn", getIPAddress(), "CSV", ",", "Province,District,Date,Time,TemperatureMin,TemperatureMax,Description,Humidity,WindSpeed,UVIndex,Visibility,Pressure,StopPoint,AirQuality,URL,IP", absolutePath, now, 1, 1, "/backup_path");
 
             // Update into data_files
             dbManager.updateDataFile(dataFileId, (long) rowCount, configId, "SU", now, true, "Successfully loaded 3-day weather data into CSV from thoitiet.vn");
 
             // Insert into data_checkpoints
             dbManager.insertDataCheckpoint("ScrapingCheckpoint", "Data Collection Completed", code, now, "Completed scraping of weather data", now, 1, 1);
-
-            dbManager.closeConnection();
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -552,80 +1126,71 @@ public class WeatherScrapingHourlyToStorage {
      * @return The standardized code string derived from the file name.
      */
     private static String convertFileNameToCode(String originalFileName) {
-        return originalFileName.trim().replace("-", "").replace("_", "").replace(".csv", "");
+        return originalFileName.trim().replace("-", "").replace("_", "").replace(".csv", "").replace(".manifest", "");
     }
 
 
     /**
-     * Completes the scraping process by terminating the ExecutorService and summarizing the results.
-     * This method waits for all scraping tasks to finish, summarizes the data collected, and then proceeds to save the data.
+     * Completes the scraping process by summarizing the results and then completing the CSV file.
      * It also calculates the total time taken for the scraping process.
      *
-     * @param executorService The ExecutorService managing the scraping tasks.
-     * @param allWeatherData  A list of collected HourlyWeatherInfo objects.
-     * @param completedUrls   A counter for the number of URLs successfully processed.
-     * @param startTime       The timestamp marking the start of the scraping process.
-     * @param dataFileId      The ID of the data file record in the database.
-     * @param directoryPath   The file path of the directory where the CSV file will be saved.
+     * @param csvWriter     The writer holding the scraped rows.
+     * @param startTime     The timestamp marking the start of the scraping process.
+     * @param dataFileId    The ID of the data file record in the database.
+     * @param directoryPath The file path of the directory where the CSV file will be saved.
+     * @throws IOException          If the CSV file cannot be completed.
+     * @throws InterruptedException If the thread is interrupted while waiting for the writer.
      */
-    private static void finalizeScraping(ExecutorService executorService, List<HourlyWeatherInfo> allWeatherData, AtomicInteger completedUrls, long startTime, int dataFileId, String directoryPath) {
-        executorService.shutdown();
-        try {
-            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+    private static void finalizeScraping(CsvStreamWriter csvWriter, long startTime, int dataFileId, String directoryPath) throws IOException, InterruptedException {
+        for (RateLimiter rateLimiter : RateLimiter.all()) {
+            System.out.println(rateLimiter);
         }
-        System.out.println("Total URLs completed: " + completedUrls.get());
-        System.out.println("Total data collected: " + allWeatherData.size());
 
-        saveDataAndPrintSummary(allWeatherData, startTime, dataFileId, directoryPath);
+        saveDataAndPrintSummary(csvWriter, startTime, dataFileId, directoryPath);
     }
 
     /**
-     * Saves the scraped weather data into a CSV file and prints a summary of the operation.
-     * This method creates a unique filename for the CSV file based on the current time and the size of the data.
-     * It then writes the collected weather data to this file and prints out the total runtime of the scraping process.
+     * Completes the CSV file and prints a summary of the operation.
+     * This method creates a unique filename for the CSV file based on the current time and the number of rows,
+     * renames the streamed file to it and prints out the total runtime of the scraping process.
      *
-     * @param allWeatherData The list of HourlyWeatherInfo objects to be saved.
-     * @param startTime      The start time of the scraping process.
-     * @param dataFileId     The ID of the data file record in the database.
-     * @param directoryPath  The file path of the directory where the CSV file will be saved.
+     * @param csvWriter     The writer holding the scraped rows.
+     * @param startTime     The start time of the scraping process.
+     * @param dataFileId    The ID of the data file record in the database.
+     * @param directoryPath The file path of the directory where the CSV file will be saved.
+     * @throws IOException          If the CSV file cannot be completed.
+     * @throws InterruptedException If the thread is interrupted while waiting for the writer.
      */
-    private static void saveDataAndPrintSummary(List<HourlyWeatherInfo> allWeatherData, long startTime, int dataFileId, String directoryPath) {
+    private static void saveDataAndPrintSummary(CsvStreamWriter csvWriter, long startTime, int dataFileId, String directoryPath) throws IOException, InterruptedException {
         LocalDateTime now = LocalDateTime.now();
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm");
         String formattedDateTime = now.format(formatter);
 
-        String fileName = formattedDateTime + "_" + allWeatherData.size() + ".csv";
-        String absolutePath = directoryPath + File.separator + formattedDateTime + "_" + allWeatherData.size() + ".csv";
-        saveToCSV(allWeatherData, absolutePath);
+        // The writer thread must be drained before the count is final
+        int rowCount = csvWriter.finish();
+        String fileName = formattedDateTime + "_" + rowCount + ".csv";
+        String absolutePath = directoryPath + File.separator + fileName;
+        csvWriter.complete(Paths.get(absolutePath));
         System.out.println("Success save to " + fileName);
 
         long endTime = System.currentTimeMillis();
         long duration = endTime - startTime;
         System.out.println("Total runtime: " + duration + " ms");
 
-        insertToControlSuccessProcess(fileName, absolutePath, dataFileId, allWeatherData.size(), now);
+        if (CONTROL_ENABLED) {
+            insertToControlSuccessProcess(fileName, absolutePath, dataFileId, rowCount, now);
+        }
     }
 
     /**
-     * Retrieves the public IP address of the current machine.
-     * This method accesses an external service to obtain the public IP address of the machine running this application.
-     * It is used for logging purposes in the scraping process.
+     * Retrieves the IP address of the current machine.
+     * The address is resolved once per process by {@link HostIdentity}, with a timeout and a fallback to a local address,
+     * and is used for logging purposes in the scraping process.
      *
-     * @return The public IP address as a String, or an error message if the address cannot be retrieved.
+     * @return The public IP address, a local address if it cannot be retrieved, or an error message.
      */
     public static String getIPAddress() {
-        try {
-            URL whatIsMyIP = new URL("https://checkip.amazonaws.com");
-            BufferedReader in = new BufferedReader(new InputStreamReader(whatIsMyIP.openStream()));
-            String ipAddress = in.readLine().trim();
-            in.close();
-            return ipAddress;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return "Không thể lấy địa chỉ IP";
-        }
+        return HostIdentity.get();
     }
 
     /**
@@ -637,24 +1202,34 @@ public class WeatherScrapingHourlyToStorage {
      * @return The total number of unique URLs for the specified region.
      */
     private static int countUrl(String regionName) {
+        LocationCatalog catalog = loadFreshCatalog(regionName);
+        if (catalog == null) {
+            try {
+                catalog = new LocationCatalog(regionName, System.currentTimeMillis(),
+                        discoverAndSaveCatalog(regionName, null, location -> true, LocationCatalog.load(CATALOG_DIRECTORY, regionName)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            } catch (ExecutionException e) {
+                System.err.println("Error while discovering locations: " + e.getCause().getMessage());
+                return -1;
+            } finally {
+                shutdownEngine();
+            }
+        }
 
         Set<String> allUrls = new HashSet<>();
         int provinceCount = 0;
         int districtCount = 0;
         int urlForAirQualityCount = 0;
-
-        List<ProvinceInfo> provinces = getAllProvinces(regionName);
-        for (ProvinceInfo province : provinces) {
-            provinceCount++;
-            urlForAirQualityCount++;
-            allUrls.add(province.getUrl());
-
-            List<DistrictInfo> districts = getDistrictsOfProvince(province.getUrl());
-            for (DistrictInfo district : districts) {
+        for (LocationTask location : catalog.getLocations()) {
+            if (location.getDistrict().isEmpty()) {
+                provinceCount++;
+            } else {
                 districtCount++;
-                urlForAirQualityCount++;
-                allUrls.add(district.getUrl());
             }
+            urlForAirQualityCount++;
+            allUrls.add(location.getUrl());
         }
 
         System.out.println("Tổng số tỉnh: " + provinceCount);
@@ -679,7 +1254,11 @@ public class WeatherScrapingHourlyToStorage {
             return;
         }
 
-        scrapeAndSaveToCsv(DongNamBo, "D:\\dataWeatherCsv");
+        if (SHARD_MODE.equalsIgnoreCase("off")) {
+            scrapeAndSaveToCsv(DongNamBo, OUTPUT_DIRECTORY);
+        } else {
+            scrapeShardsToCsv(OUTPUT_DIRECTORY);
+        }
 //        countUrl(DongNamBo);
 //        System.out.println(getAllProvinces("Đông Nam Bộ"));
 //        System.out.println(getDistrictsOfProvince("https://thoitiet.vn/ho-chi-minh"));
@@ -0,0 +1,156 @@
+package ScrapDataToCsvStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import org.openqa.selenium.WebDriver;
+
+/**
+ * A bounded pool of reusable WebDriver sessions.
+ * Instead of launching and quitting a browser for every page, callers borrow a session,
+ * use it and give it back. A session is health-checked before it is handed out and is
+ * recycled (quit and replaced) after it has served a configured number of pages, which keeps
+ * long-running browsers from accumulating memory.
+ */
+public class WebDriverPool {
+
+    private final Supplier<WebDriver> driverFactory;
+    private final int maxPagesPerSession;
+    private final Semaphore permits;
+    private final BlockingQueue<PooledSession> idleSessions = new LinkedBlockingQueue<>();
+    private final Map<WebDriver, PooledSession> borrowedSessions = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * A browser session together with the number of pages it has served.
+     */
+    private static class PooledSession {
+        private final WebDriver driver;
+        private int pagesServed;
+
+        private PooledSession(WebDriver driver) {
+            this.driver = driver;
+        }
+    }
+
+    /**
+     * Constructs a new WebDriverPool. Sessions are created lazily, so no browser is started until the first borrow.
+     *
+     * @param driverFactory      Creates a new WebDriver session when the pool needs one.
+     * @param maxSessions        The maximum number of sessions alive at the same time.
+     * @param maxPagesPerSession The number of pages a session serves before it is recycled.
+     */
+    public WebDriverPool(Supplier<WebDriver> driverFactory, int maxSessions, int maxPagesPerSession) {
+        this.driverFactory = driverFactory;
+        this.maxPagesPerSession = Math.max(1, maxPagesPerSession);
+        this.permits = new Semaphore(Math.max(1, maxSessions), true);
+    }
+
+    /**
+     * Borrows a session from the pool, waiting if all sessions are in use.
+     * Idle sessions that no longer respond are quit and replaced by a new one.
+     *
+     * @return A healthy WebDriver session. It must be given back with {@link #release(WebDriver)} or {@link #invalidate(WebDriver)}.
+     * @throws InterruptedException If the thread is interrupted while waiting for a session.
+     */
+    public WebDriver borrow() throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("WebDriver pool has been shut down");
+        }
+        permits.acquire();
+        try {
+            PooledSession session;
+            while ((session = idleSessions.poll()) != null) {
+                if (isHealthy(session.driver)) {
+                    break;
+                }
+                quietlyQuit(session.driver);
+            }
+            if (session == null) {
+                session = new PooledSession(driverFactory.get());
+            }
+            borrowedSessions.put(session.driver, session);
+            return session.driver;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a session to the pool after one page has been served.
+     * The session is quit instead of being reused when it has reached its page limit or the pool is shut down.
+     * Releasing a session that has been invalidated has no effect, so callers may release in a finally block.
+     *
+     * @param driver The session previously obtained from {@link #borrow()}.
+     */
+    public void release(WebDriver driver) {
+        PooledSession session = borrowedSessions.remove(driver);
+        if (session == null) {
+            return;
+        }
+        session.pagesServed++;
+        if (closed || session.pagesServed >= maxPagesPerSession) {
+            quietlyQuit(session.driver);
+        } else {
+            idleSessions.offer(session);
+        }
+        permits.release();
+    }
+
+    /**
+     * Discards a session that failed while it was borrowed, freeing its slot for a new session.
+     * A crashed browser is then replaced right away instead of waiting in the idle queue for the next health check.
+     *
+     * @param driver The session previously obtained from {@link #borrow()}.
+     */
+    public void invalidate(WebDriver driver) {
+        PooledSession session = borrowedSessions.remove(driver);
+        if (session == null) {
+            return;
+        }
+        quietlyQuit(session.driver);
+        permits.release();
+    }
+
+    /**
+     * Quits all idle sessions and prevents further borrowing. Sessions still borrowed are quit when they are released.
+     */
+    public void shutdown() {
+        closed = true;
+        List<PooledSession> sessions = new ArrayList<>();
+        idleSessions.drainTo(sessions);
+        for (PooledSession session : sessions) {
+            quietlyQuit(session.driver);
+        }
+    }
+
+    /**
+     * Checks whether a session still responds to WebDriver commands.
+     *
+     * @param driver The session to check.
+     * @return true if the browser answered, false otherwise.
+     */
+    private static boolean isHealthy(WebDriver driver) {
+        try {
+            driver.getWindowHandle();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static void quietlyQuit(WebDriver driver) {
+        try {
+            driver.quit();
+        } catch (Exception e) {
+            System.err.println("Error while quitting WebDriver session: " + e.getMessage());
+        }
+    }
+}